@@ -0,0 +1,78 @@
+package com.weather.statistics.benchmark;
+
+import com.weather.statistics.storage.compression.GorillaBlock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of one hour-long Gorilla block, in readings per second. The
+ * compression ratio of each shape is printed at setup, against the 20-byte fixed-width segment
+ * record (a JPA Metric row costs well over 100 bytes with its indexes).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockCompressionBenchmark {
+
+    private static final int READINGS = 3600;
+    private static final int FIXED_RECORD_BYTES = 20;
+    private static final long START_MICROS = 1_735_689_600_000_000L;
+
+    /**
+     * regular: one reading per second, temperature-like random walk in 0.1 steps.
+     * jittered: the same with up to 50 ms of clock jitter per reading.
+     * noisy: irregular gaps and uncorrelated values, roughly the worst case.
+     */
+    @Param({"regular", "jittered", "noisy"})
+    private String shape;
+
+    private long[] times;
+    private double[] values;
+    private ByteBuffer block;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        times = new long[READINGS];
+        values = new double[READINGS];
+        long time = START_MICROS;
+        double temperature = 180;
+        for (int i = 0; i < READINGS; i++) {
+            switch (shape) {
+                case "regular" -> time = START_MICROS + i * 1_000_000L;
+                case "jittered" -> time = START_MICROS + i * 1_000_000L + random.nextInt(50_000);
+                default -> time += 1 + random.nextInt(2_000_000);
+            }
+            temperature += random.nextInt(3) - 1;
+            times[i] = time;
+            values[i] = "noisy".equals(shape) ? random.nextGaussian() * 10 : temperature / 10;
+        }
+        byte[] encoded = GorillaBlock.encode(times, values, READINGS);
+        block = ByteBuffer.wrap(encoded);
+        double bytesPerReading = (double) encoded.length / READINGS;
+        System.out.printf("%n%s: %.2f bytes/reading, %.1fx smaller than %d-byte fixed records%n",
+                shape, bytesPerReading, FIXED_RECORD_BYTES / bytesPerReading, FIXED_RECORD_BYTES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public byte[] encode() {
+        return GorillaBlock.encode(times, values, READINGS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public void decode(Blackhole blackhole) {
+        GorillaBlock.decode(block, 0, (time, value) -> {
+            blackhole.consume(time);
+            blackhole.consume(value);
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package com.weather.statistics.benchmark;
+
+import com.weather.statistics.controller.WeatherController;
+import com.weather.statistics.dto.RequestDto;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.mapper.SensorDataMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request conversions: {@link SensorDataMapper} in both directions for requests of 10 and
+ * 1000 readings, and {@code WeatherController.parseDate} for both accepted formats (day-first
+ * dates are only tried after the ISO pattern fails).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    // parseDate does not touch any collaborator.
+    private final WeatherController controller = new WeatherController(null, null, null, null, null, null, null);
+
+    @State(Scope.Benchmark)
+    public static class Mapping {
+
+        @Param({"10", "1000"})
+        private int metrics;
+
+        private Sensor sensor;
+        private RequestDto request;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            sensor = SyntheticReadings.sensor(SyntheticReadings.FIRST_SENSOR_ID, metrics, LocalDateTime.of(2025, 1, 1, 0, 0));
+            request = SensorDataMapper.sensorToSensorDto(sensor);
+        }
+    }
+
+    @Benchmark
+    public RequestDto sensorToSensorDto(Mapping mapping) {
+        return SensorDataMapper.sensorToSensorDto(mapping.sensor);
+    }
+
+    @Benchmark
+    public Sensor sensorDtoToSensor(Mapping mapping) {
+        return SensorDataMapper.sensorDtoToSensor(mapping.request);
+    }
+
+    @Benchmark
+    public LocalDateTime parseIsoDate() {
+        return controller.parseDate("2025-01-15T10:30:00");
+    }
+
+    @Benchmark
+    public LocalDateTime parseDayFirstDate() {
+        return controller.parseDate("15-01-2025T10:30:00");
+    }
+}
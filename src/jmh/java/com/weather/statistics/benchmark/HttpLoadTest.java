@@ -0,0 +1,137 @@
+package com.weather.statistics.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Closed-loop HTTP load generator for comparing platform and virtual thread request handling.
+ * Keeps {@code concurrency} requests in flight against a running instance for {@code duration}
+ * seconds and prints throughput and latency percentiles.
+ *
+ * <pre>
+ * --url=http://localhost:8080 --scenario=metrics|create --concurrency=5000 --duration=60 --sensors=100
+ * </pre>
+ */
+public class HttpLoadTest {
+
+    private static final int MAX_LATENCY_MILLIS = 60_000;
+
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(MAX_LATENCY_MILLIS + 1);
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        String url = options.getOrDefault("url", "http://localhost:8080");
+        String scenario = options.getOrDefault("scenario", "metrics");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "5000"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int sensors = Integer.parseInt(options.getOrDefault("sensors", "100"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        seed(client, url, sensors);
+
+        HttpLoadTest loadTest = new HttpLoadTest();
+        long elapsed = loadTest.run(client, () -> request(url, scenario, sensors), concurrency, durationSeconds);
+        loadTest.report(scenario, concurrency, elapsed);
+        System.exit(0);
+    }
+
+    private static void seed(HttpClient client, String url, int sensors) throws Exception {
+        StringBuilder body = new StringBuilder("{\"sensorList\":[");
+        for (int i = 1; i <= sensors; i++) {
+            body.append(i > 1 ? "," : "")
+                    .append("{\"sensorId\":").append(i).append(",\"location\":\"location-").append(i)
+                    .append("\",\"metricList\":[{\"type\":\"temperature\",\"data\":20.0},{\"type\":\"humidity\",\"data\":50.0}]}");
+        }
+        body.append("]}");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/weather/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private static HttpRequest request(String url, String scenario, int sensors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sensorId = random.nextInt(sensors) + 1;
+        if ("create".equals(scenario)) {
+            String body = "{\"sensorId\":" + sensorId + ",\"location\":\"location-" + sensorId + "\",\"metricList\":["
+                    + "{\"type\":\"temperature\",\"data\":" + random.nextInt(-200, 400) / 10.0 + "},"
+                    + "{\"type\":\"humidity\",\"data\":" + random.nextInt(0, 1000) / 10.0 + "}]}";
+            return HttpRequest.newBuilder(URI.create(url + "/weather/create"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+        return HttpRequest.newBuilder(URI.create(url + "/weather/metrics?sensorIds=" + sensorId
+                        + "&metrics=temperature,humidity&statistic=average"))
+                .GET()
+                .build();
+    }
+
+    private long run(HttpClient client, Supplier<HttpRequest> requests,
+                     int concurrency, int durationSeconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            client.sendAsync(requests.get(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error == null && response.statusCode() < 300) {
+                            succeeded.increment();
+                        } else {
+                            failed.increment();
+                        }
+                        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent);
+                        latencyHistogram.incrementAndGet((int) Math.min(millis, MAX_LATENCY_MILLIS));
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(concurrency);
+        return System.nanoTime() - start;
+    }
+
+    private void report(String scenario, int concurrency, long elapsedNanos) {
+        long total = succeeded.sum() + failed.sum();
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("scenario=%s concurrency=%d requests=%d failed=%d throughput=%.1f req/s p50=%dms p95=%dms p99=%dms%n",
+                scenario, concurrency, total, failed.sum(), total / seconds,
+                percentile(total, 0.50), percentile(total, 0.95), percentile(total, 0.99));
+    }
+
+    private long percentile(long total, double quantile) {
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int millis = 0; millis <= MAX_LATENCY_MILLIS; millis++) {
+            seen += latencyHistogram.get(millis);
+            if (seen >= rank && rank > 0) {
+                return millis;
+            }
+        }
+        return MAX_LATENCY_MILLIS;
+    }
+}
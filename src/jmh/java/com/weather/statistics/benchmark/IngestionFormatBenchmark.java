@@ -0,0 +1,86 @@
+package com.weather.statistics.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.RequestDto;
+import com.weather.statistics.ingest.ReadingBatch;
+import com.weather.statistics.ingest.ReadingBatchCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to encode and to parse one /weather/create request as JSON, with the ObjectMapper settings
+ * Spring Boot uses, and in the binary format of {@link ReadingBatchCodec}. The payload size of
+ * each format is printed at setup. Encoding is the gateway's cost, parsing the server's; JSON
+ * parsing builds a {@link MetricDto} per reading, the binary format fills three arrays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionFormatBenchmark {
+
+    private static final String[] TYPES = {"temperature", "humidity", "windSpeed", "pressure"};
+
+    @Param({"10", "100", "1000"})
+    private int readings;
+
+    private ObjectMapper objectMapper;
+    private RequestDto request;
+    private ReadingBatch batch;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        objectMapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.SECONDS);
+        List<MetricDto> metricList = new ArrayList<>(readings);
+        for (int i = 0; i < readings; i++) {
+            metricList.add(new MetricDto(TYPES[i % TYPES.length], Math.round(random.nextGaussian() * 100) / 10.0,
+                    start.plusSeconds(i / TYPES.length)));
+        }
+        request = new RequestDto(1001L, "London", metricList);
+        batch = ReadingBatch.from(request);
+        json = objectMapper.writeValueAsBytes(request);
+        binary = ReadingBatchCodec.encode(batch);
+        System.out.printf("%n%d readings: JSON %d bytes, binary %d bytes, %.1fx smaller%n",
+                readings, json.length, binary.length, (double) json.length / binary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return ReadingBatchCodec.encode(batch);
+    }
+
+    @Benchmark
+    public RequestDto parseJson() throws IOException {
+        return objectMapper.readValue(json, RequestDto.class);
+    }
+
+    @Benchmark
+    public ReadingBatch parseBinary() {
+        return ReadingBatchCodec.decode(binary);
+    }
+}
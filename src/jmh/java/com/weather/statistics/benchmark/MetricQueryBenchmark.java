@@ -0,0 +1,93 @@
+package com.weather.statistics.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the /weather/metrics aggregate query against H2 as the metric table grows, with and
+ * without the composite index declared on {@code Metric}.
+ * The schema mirrors what Hibernate generates for the entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class MetricQueryBenchmark {
+
+    private static final int SENSORS = 100;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static final String AGGREGATE_QUERY =
+            "SELECT s.sensor_id, m.type_id, COUNT(m.id), SUM(m.data), MIN(m.data), MAX(m.data) " +
+            "FROM metric m JOIN sensor s ON s.id = m.sensor_data_id " +
+            "WHERE s.sensor_id IN (?, ?, ?, ?, ?) AND m.type_id IN (?, ?) AND m.recorded_time BETWEEN ? AND ? " +
+            "GROUP BY s.sensor_id, m.type_id";
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private Connection connection;
+    private PreparedStatement aggregate;
+    private LocalDateTime windowEnd;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:bench_" + rows + "_" + indexed + ";OPTIMIZE_REUSE_RESULTS=FALSE", "sa", "sa");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE sensor (id BIGINT PRIMARY KEY, sensor_id BIGINT, location VARCHAR(255), recorded_time TIMESTAMP(6))");
+            statement.execute("CREATE TABLE metric_type (id INTEGER PRIMARY KEY, name VARCHAR(255) NOT NULL)");
+            statement.execute("INSERT INTO metric_type VALUES (1, 'temperature'), (2, 'humidity')");
+            statement.execute("CREATE TABLE metric (id BIGINT PRIMARY KEY, type_id INTEGER, data DOUBLE PRECISION, " +
+                    "sensor_data_id BIGINT REFERENCES sensor(id), recorded_time TIMESTAMP(6))");
+            statement.execute("INSERT INTO sensor SELECT X, 1000 + X, 'location-' || X, TIMESTAMP '2025-01-01 00:00:00' FROM SYSTEM_RANGE(1, " + SENSORS + ")");
+            // One reading per sensor per type every minute, spread round-robin over the sensors.
+            statement.execute("INSERT INTO metric SELECT X, CASEWHEN(MOD(X / " + SENSORS + ", 2) = 0, 1, 2), " +
+                    "MOD(X * 7919, 4000) / 100.0 - 10, MOD(X, " + SENSORS + ") + 1, " +
+                    "DATEADD('MINUTE', X / " + (SENSORS * 2) + ", TIMESTAMP '2025-01-01 00:00:00') FROM SYSTEM_RANGE(1, " + rows + ")");
+            statement.execute("CREATE UNIQUE INDEX idx_sensor_sensor_id ON sensor(sensor_id)");
+            if (indexed) {
+                statement.execute("CREATE INDEX idx_metric_sensor_time ON metric(sensor_data_id, recorded_time)");
+            }
+            statement.execute("ANALYZE");
+        }
+        windowEnd = START.plusMinutes(rows / (SENSORS * 2));
+        aggregate = connection.prepareStatement(AGGREGATE_QUERY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /** Last day of data for five sensors, the shape of a typical dashboard query. */
+    @Benchmark
+    public void aggregateLastDay(Blackhole blackhole) throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            aggregate.setLong(i + 1, 1001 + i * 10);
+        }
+        aggregate.setInt(6, 1);
+        aggregate.setInt(7, 2);
+        aggregate.setTimestamp(8, Timestamp.valueOf(windowEnd.minusDays(1)));
+        aggregate.setTimestamp(9, Timestamp.valueOf(windowEnd));
+        try (ResultSet resultSet = aggregate.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getDouble(4));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.weather.statistics.benchmark;
+
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.cache.QueryResultCache;
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.ReadingKeyFilter;
+import com.weather.statistics.metrics.WeatherMetrics;
+import com.weather.statistics.query.ShardedQueryExecutor;
+import com.weather.statistics.repository.SensorRepository;
+import com.weather.statistics.rollup.RollupService;
+import com.weather.statistics.service.WeatherServiceImpl;
+import com.weather.statistics.storage.ReadingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@code querySensorData} over 1000 sensors and two types, answered from the hot store, with the
+ * parallel query mode on 1 to 16 threads. {@code threads=1} runs serially on the calling thread,
+ * the baseline the others are compared with; expect gains to level off at the machine's core
+ * count. The hot store is used because its cost is per sensor; the synthetic store scans every
+ * row for each shard and would not show how sharding scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ParallelQueryBenchmark {
+
+    private static final int SENSORS = 1000;
+
+    @Param({"1000000", "10000000"})
+    private int rows;
+
+    @Param({"average", "p95"})
+    private String statistic;
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int threads;
+
+    private WeatherServiceImpl weatherService;
+    private ShardedQueryExecutor executor;
+    private List<Long> sensorIds;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticReadings readings = new SyntheticReadings(rows, SENSORS, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        ReadingStore store = readings.store();
+        SensorRepository sensorRepository = mock(SensorRepository.class);
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(readings.sensors());
+
+        MetricTypeRegistry types = SyntheticReadings.typeRegistry();
+        HotStore hotStore = new HotStore(store, types, true, Duration.ofDays(8));
+        hotStore.warmUp();
+        executor = new ShardedQueryExecutor(threads > 1, threads, 64, 32);
+        weatherService = new WeatherServiceImpl(sensorRepository, store, new ReadingKeyFilter(1, 1, Duration.ofMinutes(1)),
+                new SensorRegistry(sensorRepository, 10000, Duration.ofHours(1)), null, new RollupService(null, store, types, null, false, Duration.ZERO),
+                new QueryResultCache(false, 1, Duration.ofMinutes(1), Duration.ZERO), hotStore,
+                new WeatherMetrics(new SimpleMeterRegistry(), false, Duration.ofSeconds(1), 1.0), executor, null, types, 10000);
+        sensorIds = readings.sensorIds();
+        start = readings.start();
+        end = readings.end();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public Map<Long, Map<String, Double>> querySensorData() {
+        return weatherService.querySensorData(sensorIds, SyntheticReadings.TYPES, statistic, start, end);
+    }
+}
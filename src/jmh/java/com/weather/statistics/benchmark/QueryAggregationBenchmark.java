@@ -0,0 +1,88 @@
+package com.weather.statistics.benchmark;
+
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.cache.QueryResultCache;
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.ReadingKeyFilter;
+import com.weather.statistics.metrics.WeatherMetrics;
+import com.weather.statistics.query.ShardedQueryExecutor;
+import com.weather.statistics.repository.SensorRepository;
+import com.weather.statistics.rollup.RollupService;
+import com.weather.statistics.service.WeatherServiceImpl;
+import com.weather.statistics.storage.ReadingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@code WeatherServiceImpl.querySensorData} over the last 7 days of 100 sensors and two types
+ * (200 groups), from 1k to 10M {@link SyntheticReadings}. Includes validation, aggregation and
+ * {@code computeStatistics} for every group; the query cache and rollups are off.
+ * <ul>
+ *     <li>hotstore: answered from the in-memory hot store, loaded with every reading.</li>
+ *     <li>stream: the path without hot store or rollups. Percentiles stream every reading into
+ *     sketches; other statistics come from the store's aggregate, here a plain scan standing in
+ *     for the database (see MetricQueryBenchmark for the real query).</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class QueryAggregationBenchmark {
+
+    private static final int SENSORS = 100;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    @Param({"average", "stddev", "p95"})
+    private String statistic;
+
+    @Param({"hotstore", "stream"})
+    private String source;
+
+    private WeatherServiceImpl weatherService;
+    private List<Long> sensorIds;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticReadings readings = new SyntheticReadings(rows, SENSORS, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        ReadingStore store = readings.store();
+        SensorRepository sensorRepository = mock(SensorRepository.class);
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(readings.sensors());
+
+        MetricTypeRegistry types = SyntheticReadings.typeRegistry();
+        HotStore hotStore = new HotStore(store, types, "hotstore".equals(source), Duration.ofDays(8));
+        hotStore.warmUp();
+        // Writes are not exercised, so no writer, validator or rollup repository is needed.
+        weatherService = new WeatherServiceImpl(sensorRepository, store, new ReadingKeyFilter(1, 1, Duration.ofMinutes(1)),
+                new SensorRegistry(sensorRepository, 1000, Duration.ofHours(1)), null, new RollupService(null, store, types, null, false, Duration.ZERO),
+                new QueryResultCache(false, 1, Duration.ofMinutes(1), Duration.ZERO), hotStore,
+                new WeatherMetrics(new SimpleMeterRegistry(), false, Duration.ofSeconds(1), 1.0),
+                new ShardedQueryExecutor(false, 0, 64, 32), null, types, 10000);
+        sensorIds = readings.sensorIds();
+        start = readings.start();
+        end = readings.end();
+    }
+
+    @Benchmark
+    public Map<Long, Map<String, Double>> querySensorData() {
+        return weatherService.querySensorData(sensorIds, SyntheticReadings.TYPES, statistic, start, end);
+    }
+}
@@ -0,0 +1,75 @@
+package com.weather.statistics.benchmark;
+
+import com.weather.statistics.StatisticsApplication;
+import com.weather.statistics.dto.RequestDto;
+import com.weather.statistics.dto.ResponseDto;
+import com.weather.statistics.service.WeatherService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@code POST /weather/create} below the HTTP layer: {@code WeatherService.sensorData}
+ * for an existing sensor, through deduplication, the type registry, the write transaction,
+ * rollups and the raw insert into an in-memory H2 started with the application's own
+ * configuration. Requests rotate over 100 sensors; the table grows during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SaveMetricsBenchmark {
+
+    private static final int SENSORS = 100;
+
+    /** Readings per request. */
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    @Param({"true", "false"})
+    private boolean rollups;
+
+    private ConfigurableApplicationContext context;
+    private WeatherService weatherService;
+    private List<RequestDto> requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(StatisticsApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:save_metrics_" + batchSize + "_" + rollups,
+                        "weather.rollup.enabled=" + rollups)
+                .run();
+        weatherService = context.getBean(WeatherService.class);
+        requests = new ArrayList<>(SENSORS);
+        for (int i = 0; i < SENSORS; i++) {
+            long sensorId = SyntheticReadings.FIRST_SENSOR_ID + i;
+            RequestDto request = new RequestDto(sensorId, "location-" + sensorId, SyntheticReadings.metricDtos(batchSize));
+            weatherService.sensorData(request);
+            requests.add(request);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseDto saveMetrics() {
+        RequestDto request = requests.get(next);
+        next = (next + 1) % SENSORS;
+        return weatherService.sensorData(request);
+    }
+}
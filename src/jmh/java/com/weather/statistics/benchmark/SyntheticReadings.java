@@ -0,0 +1,255 @@
+package com.weather.statistics.benchmark;
+
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.MetricType;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.repository.MetricTypeRepository;
+import com.weather.statistics.storage.ReadingStore;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Deterministic benchmark data: the same row count and sensor count always give the same
+ * readings. Readings are spread evenly over the {@link #SPAN} before {@code end}, round-robin
+ * over sensors and {@link #TYPES}, with values drawn from a fixed seed. Only the absolute times
+ * move with {@code end}, so data inside a retention window stays inside it.
+ */
+public final class SyntheticReadings {
+
+    public static final List<String> TYPES = List.of("temperature", "humidity");
+    public static final Duration SPAN = Duration.ofDays(7);
+    public static final long FIRST_SENSOR_ID = 1001;
+    private static final long SEED = 42;
+
+    private final int sensors;
+    private final LocalDateTime end;
+    private final long[] seconds;
+    private final double[] values;
+
+    public SyntheticReadings(int rows, int sensors, LocalDateTime end) {
+        this.sensors = sensors;
+        this.end = end;
+        this.seconds = new long[rows];
+        this.values = new double[rows];
+        Random random = new Random(SEED);
+        long first = start().toEpochSecond(ZoneOffset.UTC);
+        for (int i = 0; i < rows; i++) {
+            seconds[i] = first + i * SPAN.getSeconds() / rows;
+            values[i] = value(random, type(i));
+        }
+    }
+
+    /**
+     * {@code count} readings for one request, without reading IDs or recorded times, so repeated
+     * requests are never deduplicated.
+     */
+    public static List<MetricDto> metricDtos(int count) {
+        Random random = new Random(SEED);
+        List<MetricDto> metrics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String type = TYPES.get(i % TYPES.size());
+            metrics.add(new MetricDto(type, value(random, type), null));
+        }
+        return metrics;
+    }
+
+    /**
+     * A registry that knows {@link #TYPES}, numbered from 1 in list order.
+     */
+    public static MetricTypeRegistry typeRegistry() {
+        MetricTypeRepository repository = mock(MetricTypeRepository.class);
+        when(repository.findAll()).thenReturn(IntStream.range(0, TYPES.size())
+                .mapToObj(i -> new MetricType(i + 1, TYPES.get(i)))
+                .toList());
+        MetricTypeRegistry registry = new MetricTypeRegistry(repository, mock(PlatformTransactionManager.class), Duration.ofMinutes(1));
+        registry.load();
+        return registry;
+    }
+
+    public static Sensor sensor(long sensorId, int metrics, LocalDateTime recordedTime) {
+        Sensor sensor = new Sensor(null, sensorId, "location-" + sensorId, new ArrayList<>(), recordedTime);
+        for (MetricDto dto : metricDtos(metrics)) {
+            sensor.getMetricList().add(new Metric(null, dto.getType(), dto.getData(), sensor, recordedTime, null));
+        }
+        return sensor;
+    }
+
+    public List<Sensor> sensors() {
+        List<Sensor> result = new ArrayList<>(sensors);
+        for (int i = 0; i < sensors; i++) {
+            result.add(new Sensor((long) i + 1, FIRST_SENSOR_ID + i, "location-" + (FIRST_SENSOR_ID + i), List.of(), start()));
+        }
+        return result;
+    }
+
+    public List<Long> sensorIds() {
+        return sensors().stream().map(Sensor::getSensorId).toList();
+    }
+
+    public LocalDateTime start() {
+        return end.minus(SPAN);
+    }
+
+    public LocalDateTime end() {
+        return end;
+    }
+
+    /**
+     * Read-only store over the generated rows, standing in for a database: range reads build one
+     * projection per matching row like the JPA engine does, and {@code aggregate} is a plain
+     * grouped scan in place of the database's GROUP BY.
+     */
+    public ReadingStore store() {
+        return new Store();
+    }
+
+    private int sensor(int row) {
+        return row % sensors;
+    }
+
+    private int type(int row) {
+        return (row / sensors) % TYPES.size();
+    }
+
+    private static double value(Random random, String type) {
+        return "temperature".equals(type) ? 15 + random.nextGaussian() * 8 : 60 + random.nextGaussian() * 15;
+    }
+
+    private static double value(Random random, int type) {
+        return value(random, TYPES.get(type));
+    }
+
+    private final class Store implements ReadingStore {
+
+        @Override
+        public List<Metric> append(List<Metric> metrics) {
+            throw new UnsupportedOperationException("Synthetic readings are read-only");
+        }
+
+        @Override
+        public List<String> findExistingReadingKeys(Collection<String> readingKeys) {
+            return List.of();
+        }
+
+        @Override
+        public void forEachReading(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                                   Consumer<MetricReadingDto> consumer) {
+            scan(sensorIds, metrics, startDate, endDate, true, consumer);
+        }
+
+        @Override
+        public void forEachReadingHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to,
+                                           Consumer<MetricReadingDto> consumer) {
+            scan(sensorIds, metrics, from, to, false, consumer);
+        }
+
+        @Override
+        public void forEachReadingInOrder(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                                          Consumer<MetricReadingDto> consumer) {
+            throw new UnsupportedOperationException("Synthetic readings are only ordered by time");
+        }
+
+        @Override
+        public void forEachReadingSince(LocalDateTime from, Consumer<MetricReadingDto> consumer) {
+            long fromSecond = from.toEpochSecond(ZoneOffset.UTC);
+            for (int i = 0; i < seconds.length; i++) {
+                if (seconds[i] >= fromSecond) {
+                    consumer.accept(reading(i));
+                }
+            }
+        }
+
+        @Override
+        public List<MetricAggregateDto> aggregate(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate,
+                                                  LocalDateTime endDate) {
+            return aggregate(sensorIds, metrics, startDate, endDate, true);
+        }
+
+        @Override
+        public List<MetricAggregateDto> aggregateHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from,
+                                                          LocalDateTime to) {
+            return aggregate(sensorIds, metrics, from, to, false);
+        }
+
+        private List<MetricAggregateDto> aggregate(List<Long> sensorIds, List<String> metrics, LocalDateTime from,
+                                                   LocalDateTime to, boolean includeEnd) {
+            int groups = sensors * TYPES.size();
+            long[] count = new long[groups];
+            double[] sum = new double[groups];
+            double[] sumOfSquares = new double[groups];
+            double[] min = new double[groups];
+            double[] max = new double[groups];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            forEachMatch(sensorIds, metrics, from, to, includeEnd, i -> {
+                int group = sensor(i) * TYPES.size() + type(i);
+                double value = values[i];
+                count[group]++;
+                sum[group] += value;
+                sumOfSquares[group] += value * value;
+                min[group] = Math.min(min[group], value);
+                max[group] = Math.max(max[group], value);
+            });
+            List<MetricAggregateDto> aggregates = new ArrayList<>();
+            for (int group = 0; group < groups; group++) {
+                if (count[group] > 0) {
+                    aggregates.add(new MetricAggregateDto(FIRST_SENSOR_ID + group / TYPES.size(), TYPES.get(group % TYPES.size()),
+                            count[group], sum[group], min[group], max[group], sumOfSquares[group]));
+                }
+            }
+            return aggregates;
+        }
+
+        private void scan(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to, boolean includeEnd,
+                          Consumer<MetricReadingDto> consumer) {
+            forEachMatch(sensorIds, metrics, from, to, includeEnd, i -> consumer.accept(reading(i)));
+        }
+
+        private void forEachMatch(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to,
+                                  boolean includeEnd, IntConsumer consumer) {
+            boolean[] wantedSensors = new boolean[sensors];
+            for (Long sensorId : sensorIds) {
+                long index = sensorId - FIRST_SENSOR_ID;
+                if (index >= 0 && index < sensors) {
+                    wantedSensors[(int) index] = true;
+                }
+            }
+            boolean[] wantedTypes = new boolean[TYPES.size()];
+            for (int type = 0; type < TYPES.size(); type++) {
+                wantedTypes[type] = metrics.contains(TYPES.get(type));
+            }
+            long fromSecond = from.toEpochSecond(ZoneOffset.UTC);
+            long toSecond = to.toEpochSecond(ZoneOffset.UTC);
+            for (int i = 0; i < seconds.length; i++) {
+                long second = seconds[i];
+                if (second >= fromSecond && (includeEnd ? second <= toSecond : second < toSecond)
+                        && wantedSensors[sensor(i)] && wantedTypes[type(i)]) {
+                    consumer.accept(i);
+                }
+            }
+        }
+
+        private MetricReadingDto reading(int row) {
+            return new MetricReadingDto(FIRST_SENSOR_ID + sensor(row), TYPES.get(type(row)), values[row],
+                    LocalDateTime.ofEpochSecond(seconds[row], 0, ZoneOffset.UTC));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.weather.statistics.aggregation;
+
+import com.weather.statistics.dto.SeriesPointDto;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LTTB downsampling: keeps the first and last point and, from each of the buckets in between,
+ * the point forming the largest triangle with the previously kept point and the next bucket's
+ * average, which preserves the visual shape of a series at a fraction of its size.
+ */
+public final class LargestTriangleThreeBuckets {
+
+    private LargestTriangleThreeBuckets() {
+    }
+
+    public static List<SeriesPointDto> downsample(List<SeriesPointDto> points, int threshold) {
+        if (threshold >= points.size() || threshold < 3) {
+            return points;
+        }
+
+        List<SeriesPointDto> sampled = new ArrayList<>(threshold);
+        double bucketSize = (double) (points.size() - 2) / (threshold - 2);
+        int selected = 0;
+        sampled.add(points.get(0));
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, points.size());
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x(points.get(i));
+                averageY += points.get(i).getValue();
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            double selectedX = x(points.get(selected));
+            double selectedY = points.get(selected).getValue();
+            double maxArea = -1;
+            int candidate = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((selectedX - averageX) * (points.get(i).getValue() - selectedY)
+                        - (selectedX - x(points.get(i))) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    candidate = i;
+                }
+            }
+            sampled.add(points.get(candidate));
+            selected = candidate;
+        }
+
+        sampled.add(points.get(points.size() - 1));
+        return sampled;
+    }
+
+    private static double x(SeriesPointDto point) {
+        return point.getTime().toEpochSecond(ZoneOffset.UTC);
+    }
+}
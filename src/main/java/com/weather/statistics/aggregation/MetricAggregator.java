@@ -0,0 +1,191 @@
+package com.weather.statistics.aggregation;
+
+import com.datadoghq.sketch.ddsketch.DDSketch;
+import com.weather.statistics.cache.MetricTypeRegistry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-pass grouping of readings per (sensorId, type). Each sensor keeps its running
+ * count/sum/min/max/m2 in primitive arrays indexed by the metric type ID from the
+ * {@link MetricTypeRegistry}, so folding in a row costs no boxing and no per-type map lookup.
+ * Names are only resolved again when the groups are read back.
+ */
+public class MetricAggregator {
+
+    private final MetricTypeRegistry types;
+    private final boolean withQuantiles;
+    private final Map<Long, SensorStatistics> sensors = new HashMap<>();
+    private Long lastSensorId;
+    private SensorStatistics lastSensor;
+
+    public MetricAggregator(MetricTypeRegistry types) {
+        this(types, false);
+    }
+
+    public MetricAggregator(MetricTypeRegistry types, boolean withQuantiles) {
+        this.types = types;
+        this.withQuantiles = withQuantiles;
+    }
+
+    public void add(Long sensorId, String type, double value) {
+        add(sensorId, typeId(type), value);
+    }
+
+    public void add(Long sensorId, int typeId, double value) {
+        sensor(sensorId).add(typeId, value);
+    }
+
+    /**
+     * Folds a partial result for one group in, e.g. a rollup bucket or a SQL aggregate.
+     */
+    public void merge(Long sensorId, String type, StatisticAccumulator accumulator) {
+        if (!accumulator.isEmpty()) {
+            sensor(sensorId).merge(typeId(type), accumulator.getCount(), accumulator.getSum(), accumulator.getMin(),
+                    accumulator.getMax(), accumulator.getM2(), accumulator.sketch());
+        }
+    }
+
+    /**
+     * Folds another aggregator's groups into this one, e.g. the partial result of one shard.
+     */
+    public void merge(MetricAggregator other) {
+        other.sensors.forEach((sensorId, statistics) -> {
+            SensorStatistics target = sensor(sensorId);
+            for (int typeId = 0; typeId < statistics.count.length; typeId++) {
+                if (statistics.count[typeId] > 0) {
+                    target.merge(typeId, statistics.count[typeId], statistics.sum[typeId], statistics.min[typeId],
+                            statistics.max[typeId], statistics.m2[typeId],
+                            statistics.sketches == null ? null : statistics.sketches[typeId]);
+                }
+            }
+        });
+    }
+
+    public Map<Long, Map<String, StatisticAccumulator>> getGroups() {
+        Map<Long, Map<String, StatisticAccumulator>> groups = new HashMap<>();
+        sensors.forEach((sensorId, statistics) -> {
+            Map<String, StatisticAccumulator> accumulators = new HashMap<>();
+            for (int typeId = 0; typeId < statistics.count.length; typeId++) {
+                if (statistics.count[typeId] > 0) {
+                    accumulators.put(types.nameOf(typeId), StatisticAccumulator.withSketch(statistics.count[typeId],
+                            statistics.sum[typeId], statistics.min[typeId], statistics.max[typeId], statistics.m2[typeId],
+                            statistics.sketches == null ? null : statistics.sketches[typeId]));
+                }
+            }
+            groups.put(sensorId, accumulators);
+        });
+        return groups;
+    }
+
+    private int typeId(String type) {
+        int typeId = types.idOf(type);
+        if (typeId == MetricTypeRegistry.UNKNOWN_ID) {
+            throw new IllegalStateException("Metric type " + type + " is not registered");
+        }
+        return typeId;
+    }
+
+    // Readings mostly arrive grouped by sensor, so the previous sensor is checked before the map.
+    private SensorStatistics sensor(Long sensorId) {
+        if (lastSensor == null || !lastSensorId.equals(sensorId)) {
+            lastSensor = sensors.computeIfAbsent(sensorId, id -> new SensorStatistics(withQuantiles, types.size() + 1));
+            lastSensorId = sensorId;
+        }
+        return lastSensor;
+    }
+
+    /**
+     * Columns of one sensor's statistics, one slot per metric type ID; the same Welford update
+     * and Chan merge as {@link StatisticAccumulator}.
+     */
+    private static final class SensorStatistics {
+
+        private long[] count;
+        private double[] sum;
+        private double[] min;
+        private double[] max;
+        private double[] m2;
+        private DDSketch[] sketches;
+
+        SensorStatistics(boolean withQuantiles, int capacity) {
+            count = new long[capacity];
+            sum = new double[capacity];
+            min = new double[capacity];
+            max = new double[capacity];
+            m2 = new double[capacity];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            if (withQuantiles) {
+                sketches = new DDSketch[capacity];
+            }
+        }
+
+        void add(int typeId, double value) {
+            ensureCapacity(typeId);
+            long n = count[typeId];
+            double previousMean = n == 0 ? 0 : sum[typeId] / n;
+            count[typeId] = ++n;
+            sum[typeId] += value;
+            m2[typeId] += (value - previousMean) * (value - sum[typeId] / n);
+            if (value < min[typeId]) {
+                min[typeId] = value;
+            }
+            if (value > max[typeId]) {
+                max[typeId] = value;
+            }
+            if (sketches != null) {
+                sketch(typeId).accept(value);
+            }
+        }
+
+        void merge(int typeId, long otherCount, double otherSum, double otherMin, double otherMax, double otherM2,
+                   DDSketch otherSketch) {
+            ensureCapacity(typeId);
+            long n = count[typeId];
+            if (n == 0) {
+                m2[typeId] = otherM2;
+            } else {
+                double delta = otherSum / otherCount - sum[typeId] / n;
+                m2[typeId] += otherM2 + delta * delta * n * otherCount / (n + otherCount);
+            }
+            count[typeId] = n + otherCount;
+            sum[typeId] += otherSum;
+            min[typeId] = Math.min(min[typeId], otherMin);
+            max[typeId] = Math.max(max[typeId], otherMax);
+            if (sketches != null && otherSketch != null) {
+                sketch(typeId).mergeWith(otherSketch);
+            }
+        }
+
+        private DDSketch sketch(int typeId) {
+            DDSketch sketch = sketches[typeId];
+            if (sketch == null) {
+                sketch = StatisticAccumulator.newSketch();
+                sketches[typeId] = sketch;
+            }
+            return sketch;
+        }
+
+        // Types registered after the aggregator was created get slots on first use.
+        private void ensureCapacity(int typeId) {
+            if (typeId < count.length) {
+                return;
+            }
+            int oldCapacity = count.length;
+            int capacity = Math.max(typeId + 1, oldCapacity * 2);
+            count = Arrays.copyOf(count, capacity);
+            sum = Arrays.copyOf(sum, capacity);
+            min = Arrays.copyOf(min, capacity);
+            max = Arrays.copyOf(max, capacity);
+            m2 = Arrays.copyOf(m2, capacity);
+            Arrays.fill(min, oldCapacity, capacity, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, oldCapacity, capacity, Double.NEGATIVE_INFINITY);
+            if (sketches != null) {
+                sketches = Arrays.copyOf(sketches, capacity);
+            }
+        }
+    }
+}
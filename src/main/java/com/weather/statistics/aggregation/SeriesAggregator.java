@@ -0,0 +1,51 @@
+package com.weather.statistics.aggregation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Single-pass grouping of readings into fixed-width time buckets per (sensorId, type). Buckets
+ * are aligned to multiples of the interval since the epoch, so 1h buckets start on the hour and
+ * 1d buckets at midnight.
+ */
+public class SeriesAggregator {
+
+    private final Map<Long, Map<String, TreeMap<LocalDateTime, StatisticAccumulator>>> groups = new HashMap<>();
+    private final long intervalSeconds;
+    private final boolean withQuantiles;
+
+    public SeriesAggregator(Duration interval, boolean withQuantiles) {
+        this.intervalSeconds = interval.getSeconds();
+        this.withQuantiles = withQuantiles;
+    }
+
+    public void add(Long sensorId, String type, LocalDateTime time, double value) {
+        accumulator(sensorId, type, time).add(value);
+    }
+
+    public StatisticAccumulator accumulator(Long sensorId, String type, LocalDateTime time) {
+        return groups.computeIfAbsent(sensorId, id -> new HashMap<>())
+                .computeIfAbsent(type, t -> new TreeMap<>())
+                .computeIfAbsent(bucketStart(time), b -> new StatisticAccumulator(withQuantiles));
+    }
+
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(seconds - Math.floorMod(seconds, intervalSeconds), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Whether buckets of the given width never straddle two series buckets.
+     */
+    public boolean isAlignedWith(Duration bucket) {
+        return intervalSeconds % bucket.getSeconds() == 0;
+    }
+
+    public Map<Long, Map<String, TreeMap<LocalDateTime, StatisticAccumulator>>> getGroups() {
+        return groups;
+    }
+}
@@ -0,0 +1,160 @@
+package com.weather.statistics.aggregation;
+
+import com.datadoghq.sketch.ddsketch.DDSketch;
+import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
+import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.CollapsingLowestDenseStore;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Running count/sum/min/max for one (sensor, metric type) group, kept in primitives
+ * so rows can be folded in without holding on to the individual values. The sum of squared
+ * deviations ({@code m2}) is maintained with Welford's update and Chan's merge, and an
+ * optional DDSketch answers quantiles to within 1% relative error. All of it merges, so
+ * per-bucket accumulators combine across sensors and time.
+ */
+@Getter
+public class StatisticAccumulator {
+
+    private static final int MAX_SKETCH_BINS = 2048;
+    // Fixed for every sketch, so it is left out of the encoded form.
+    private static final IndexMapping INDEX_MAPPING = new LogarithmicMapping(0.01);
+
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double m2;
+    @Getter(AccessLevel.NONE)
+    private DDSketch sketch;
+
+    public StatisticAccumulator() {
+    }
+
+    public StatisticAccumulator(boolean withQuantiles) {
+        if (withQuantiles) {
+            sketch = newSketch();
+        }
+    }
+
+    /**
+     * Rebuilds an accumulator from SQL aggregates, where only the sum of squares is known.
+     */
+    public static StatisticAccumulator of(long count, double sum, double min, double max, double sumOfSquares) {
+        return of(count, sum, min, max, count == 0 ? 0 : Math.max(0, sumOfSquares - sum * sum / count), null);
+    }
+
+    public static StatisticAccumulator of(long count, double sum, double min, double max, double m2, byte[] encodedSketch) {
+        StatisticAccumulator accumulator = new StatisticAccumulator();
+        accumulator.count = count;
+        accumulator.sum = sum;
+        accumulator.min = min;
+        accumulator.max = max;
+        accumulator.m2 = m2;
+        if (encodedSketch != null) {
+            accumulator.sketch = decodeSketch(encodedSketch);
+        }
+        return accumulator;
+    }
+
+    /**
+     * Wraps moments and a sketch folded elsewhere, taking ownership of the sketch.
+     */
+    static StatisticAccumulator withSketch(long count, double sum, double min, double max, double m2, DDSketch sketch) {
+        StatisticAccumulator accumulator = of(count, sum, min, max, m2, null);
+        accumulator.sketch = sketch;
+        return accumulator;
+    }
+
+    public void add(double value) {
+        double previousMean = count == 0 ? 0 : sum / count;
+        count++;
+        sum += value;
+        m2 += (value - previousMean) * (value - sum / count);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        if (sketch != null) {
+            sketch.accept(value);
+        }
+    }
+
+    public void merge(StatisticAccumulator other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            m2 = other.m2;
+        } else {
+            double delta = other.sum / other.count - sum / count;
+            m2 += other.m2 + delta * delta * count * other.count / (count + other.count);
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.sketch != null) {
+            if (sketch == null) {
+                sketch = newSketch();
+            }
+            sketch.mergeWith(other.sketch);
+        }
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getAverage() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Population standard deviation.
+     */
+    public double getStandardDeviation() {
+        return count == 0 ? Double.NaN : Math.sqrt(m2 / count);
+    }
+
+    public double getQuantile(double quantile) {
+        return sketch == null || sketch.isEmpty() ? Double.NaN : sketch.getValueAtQuantile(quantile);
+    }
+
+    public byte[] encodeSketch() {
+        if (sketch == null) {
+            return null;
+        }
+        try {
+            GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+            sketch.encode(output, true);
+            return output.trimmedCopy();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    DDSketch sketch() {
+        return sketch;
+    }
+
+    static DDSketch newSketch() {
+        return new DDSketch(INDEX_MAPPING, () -> new CollapsingLowestDenseStore(MAX_SKETCH_BINS));
+    }
+
+    private static DDSketch decodeSketch(byte[] encoded) {
+        try {
+            return DDSketch.decode(ByteArrayInput.wrap(encoded), () -> new CollapsingLowestDenseStore(MAX_SKETCH_BINS), INDEX_MAPPING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt quantile sketch", e);
+        }
+    }
+}
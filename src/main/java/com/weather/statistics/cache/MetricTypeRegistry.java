@@ -0,0 +1,123 @@
+package com.weather.statistics.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.weather.statistics.entity.MetricType;
+import com.weather.statistics.repository.MetricTypeRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory mapping of metric type names to the small integer IDs stored on readings and
+ * rollups. Every type is loaded at startup and types are only ever added, so lookups only go to
+ * the database for names or IDs not seen yet, which another instance sharing the database may
+ * have registered since. Names found to be unregistered are remembered for
+ * {@code weather.cache.metric-type.unknown-ttl}, so repeated queries for them stay in memory.
+ * <p>
+ * New types are registered in a transaction of their own before the readings that introduce
+ * them are written, so an ID handed out is never rolled back with those readings. Lookups run on
+ * the caller's session and connection, since they are made from inside entity conversions.
+ */
+@Component
+public class MetricTypeRegistry {
+
+    /** ID of names that were never registered; no row stores it. */
+    public static final int UNKNOWN_ID = 0;
+
+    private static final long MAX_UNKNOWN_NAMES = 10_000;
+
+    private final MetricTypeRepository metricTypeRepository;
+    private final TransactionTemplate transaction;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> unknownNames;
+
+    public MetricTypeRegistry(MetricTypeRepository metricTypeRepository, PlatformTransactionManager transactionManager,
+                              @Value("${weather.cache.metric-type.unknown-ttl:PT10S}") Duration unknownTtl) {
+        this.metricTypeRepository = metricTypeRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.unknownNames = Caffeine.newBuilder()
+                .maximumSize(MAX_UNKNOWN_NAMES)
+                .expireAfterWrite(unknownTtl)
+                .build();
+    }
+
+    @PostConstruct
+    public void load() {
+        metricTypeRepository.findAll().forEach(this::cache);
+    }
+
+    /**
+     * Makes sure every non-null name has an ID; must be called before readings of a new type are
+     * stored, outside of any transaction.
+     */
+    public void register(Collection<String> typeNames) {
+        for (String name : typeNames) {
+            if (name != null && !ids.containsKey(name)) {
+                create(name);
+            }
+        }
+    }
+
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (unknownNames.getIfPresent(name) != null) {
+            return UNKNOWN_ID;
+        }
+        Optional<MetricType> type = metricTypeRepository.findByName(name);
+        type.ifPresentOrElse(this::cache, () -> unknownNames.put(name, Boolean.TRUE));
+        return type.map(MetricType::getId).orElse(UNKNOWN_ID);
+    }
+
+    public String nameOf(int id) {
+        String name = names.get(id);
+        if (name != null || id == UNKNOWN_ID) {
+            return name;
+        }
+        Optional<MetricType> type = metricTypeRepository.findById(id);
+        type.ifPresent(this::cache);
+        return type.map(MetricType::getName).orElse(null);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private synchronized void create(String name) {
+        if (ids.containsKey(name)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Metric type " + name + " must be registered before the write transaction begins");
+        }
+        MetricType type;
+        try {
+            type = transaction.execute(status -> metricTypeRepository.save(new MetricType(null, name)));
+        } catch (DataIntegrityViolationException e) {
+            // Registered concurrently against the same database; use that row.
+            type = metricTypeRepository.findByName(name).orElseThrow(() -> e);
+        }
+        cache(Objects.requireNonNull(type));
+    }
+
+    private void cache(MetricType type) {
+        names.put(type.getId(), type.getName());
+        ids.put(type.getName(), type.getId());
+        unknownNames.invalidate(type.getName());
+    }
+}
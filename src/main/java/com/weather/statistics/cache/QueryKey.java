@@ -0,0 +1,16 @@
+package com.weather.statistics.cache;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Normalized /weather/metrics query: sorted, de-duplicated sensor IDs and metric types, the
+ * lower-cased statistic and the requested time range.
+ */
+public record QueryKey(List<Long> sensorIds, List<String> metrics, String statistic,
+                       LocalDateTime startDate, LocalDateTime endDate) {
+
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return !startDate.isAfter(to) && !endDate.isBefore(from);
+    }
+}
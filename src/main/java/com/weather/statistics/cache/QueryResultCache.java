@@ -0,0 +1,199 @@
+package com.weather.statistics.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.weather.statistics.dto.CacheStatsDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.ingest.MetricsWrittenEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * LRU/TTL cache of /weather/metrics results, keyed by the exact requested range. Entries are
+ * indexed by sensor so that stored readings only evict the entries whose sensors and time range
+ * they fall into. A per-sensor version guards against caching a result computed while readings
+ * for one of its sensors were being committed. A sensor's index entry is dropped once it has no
+ * cached keys and no result is being computed for it, so the index only holds cached sensors.
+ */
+@Component
+public class QueryResultCache {
+
+    private final boolean enabled;
+    private final long granularityNanos;
+    private final Cache<QueryKey, Map<Long, Map<String, Double>>> results;
+    // Only changed through compute, which serializes everything done to one sensor's entry.
+    private final Map<Long, SensorIndex> sensors = new ConcurrentHashMap<>();
+
+    public QueryResultCache(@Value("${weather.cache.query.enabled:true}") boolean enabled,
+                            @Value("${weather.cache.query.max-size:10000}") long maxSize,
+                            @Value("${weather.cache.query.ttl:PT5M}") Duration ttl,
+                            @Value("${weather.cache.query.time-granularity:PT1M}") Duration timeGranularity) {
+        this.enabled = enabled;
+        this.granularityNanos = timeGranularity.toNanos();
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                // Run on the removing thread, so a key is unindexed before the call that removed it returns.
+                .executor(Runnable::run)
+                .<QueryKey, Map<Long, Map<String, Double>>>removalListener((key, value, cause) -> {
+                    if (cause != RemovalCause.REPLACED) {
+                        unindex(key);
+                    }
+                })
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public QueryKey key(List<Long> sensorIds, List<String> metrics, String statistic,
+                        LocalDateTime startDate, LocalDateTime endDate) {
+        return new QueryKey(sensorIds.stream().distinct().sorted().collect(Collectors.toList()),
+                metrics.stream().distinct().sorted().collect(Collectors.toList()),
+                statistic.toLowerCase(), startDate, endDate);
+    }
+
+    /**
+     * End of the window used when a query names no range: {@code now} rounded up to the time
+     * granularity, so such queries made within one granule share an entry.
+     */
+    public LocalDateTime defaultWindowEnd(LocalDateTime now) {
+        if (granularityNanos <= 0) {
+            return now;
+        }
+        long nanosOfDay = now.toLocalTime().toNanoOfDay();
+        LocalDateTime floor = now.truncatedTo(ChronoUnit.DAYS).plusNanos(nanosOfDay - nanosOfDay % granularityNanos);
+        return floor.equals(now) ? now : floor.plusNanos(granularityNanos);
+    }
+
+    public Map<Long, Map<String, Double>> get(QueryKey key, Supplier<Map<Long, Map<String, Double>>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Map<Long, Map<String, Double>> cached = results.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long[] versions = new long[key.sensorIds().size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = sensors.compute(key.sensorIds().get(i), (id, index) -> {
+                SensorIndex current = index == null ? new SensorIndex() : index;
+                current.loads++;
+                return current;
+            }).version;
+        }
+        long[] versionsAfter = new long[versions.length];
+        Map<Long, Map<String, Double>> result;
+        try {
+            result = loader.get();
+            // Indexed and stored under the entry's lock, so a concurrent removal cannot unindex it in between.
+            results.asMap().compute(key, (k, previous) -> {
+                for (Long sensorId : k.sensorIds()) {
+                    sensors.compute(sensorId, (id, index) -> {
+                        index.keys.add(k);
+                        return index;
+                    });
+                }
+                return result;
+            });
+        } finally {
+            for (int i = 0; i < versions.length; i++) {
+                int slot = i;
+                sensors.compute(key.sensorIds().get(i), (id, index) -> {
+                    index.loads--;
+                    versionsAfter[slot] = index.version;
+                    return index.isUnused() ? null : index;
+                });
+            }
+        }
+        // Readings committed while the result was computed may be missing from it.
+        if (!Arrays.equals(versions, versionsAfter)) {
+            results.invalidate(key);
+        }
+        return result;
+    }
+
+    @TransactionalEventListener
+    public void onMetricsWritten(MetricsWrittenEvent event) {
+        event.metrics().stream()
+                .collect(Collectors.groupingBy(metric -> metric.getSensor().getSensorId()))
+                .forEach((sensorId, metrics) -> invalidate(sensorId,
+                        metrics.stream().map(Metric::getRecordedTime).min(LocalDateTime::compareTo).orElseThrow(),
+                        metrics.stream().map(Metric::getRecordedTime).max(LocalDateTime::compareTo).orElseThrow()));
+    }
+
+    public void invalidate(Long sensorId, LocalDateTime from, LocalDateTime to) {
+        List<QueryKey> overlapping = new ArrayList<>();
+        // A sensor without an entry has nothing cached and nothing being computed.
+        sensors.computeIfPresent(sensorId, (id, index) -> {
+            index.version++;
+            index.keys.stream().filter(key -> key.overlaps(from, to)).forEach(overlapping::add);
+            return index;
+        });
+        results.invalidateAll(overlapping);
+    }
+
+    /**
+     * Number of sensors with cached results or results being computed.
+     */
+    public int trackedSensors() {
+        return sensors.size();
+    }
+
+    public CacheStatsDto stats() {
+        CacheStats stats = results.stats();
+        return new CacheStatsDto("queryResults", results.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount());
+    }
+
+    /**
+     * Drops a removed key from the index, unless it has been cached again since; checked under
+     * the entry's lock so it cannot interleave with {@link #get} storing the key.
+     */
+    private void unindex(QueryKey key) {
+        if (key == null) {
+            return;
+        }
+        results.asMap().compute(key, (k, current) -> {
+            if (current == null) {
+                for (Long sensorId : k.sensorIds()) {
+                    sensors.computeIfPresent(sensorId, (id, index) -> {
+                        index.keys.remove(k);
+                        return index.isUnused() ? null : index;
+                    });
+                }
+            }
+            return current;
+        });
+    }
+
+    private static final class SensorIndex {
+
+        private final Set<QueryKey> keys = new HashSet<>();
+        private long version;
+        private int loads;
+
+        private boolean isUnused() {
+            return keys.isEmpty() && loads == 0;
+        }
+    }
+}
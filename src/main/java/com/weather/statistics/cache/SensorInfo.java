@@ -0,0 +1,24 @@
+package com.weather.statistics.cache;
+
+import com.weather.statistics.entity.Sensor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * Immutable snapshot of a sensor row as held by {@link SensorRegistry}.
+ */
+public record SensorInfo(Long id, Long sensorId, String location, LocalDateTime recordedTime) {
+
+    public static SensorInfo of(Sensor sensor) {
+        return new SensorInfo(sensor.getId(), sensor.getSensorId(), sensor.getLocation(), sensor.getRecordedTime());
+    }
+
+    /**
+     * A detached {@link Sensor} carrying this row's id, usable as the owner of new metrics
+     * without loading the sensor again.
+     */
+    public Sensor toSensor() {
+        return new Sensor(id, sensorId, location, new ArrayList<>(), recordedTime);
+    }
+}
@@ -0,0 +1,60 @@
+package com.weather.statistics.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.weather.statistics.dto.CacheStatsDto;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.repository.SensorRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Size-bounded, expiring cache of sensor rows keyed by sensorId. Sensors are never updated
+ * once registered, so entries only need replacing when a sensor is created. Unknown IDs are
+ * not cached and always go to the database.
+ */
+@Component
+public class SensorRegistry {
+
+    private final SensorRepository sensorRepository;
+    private final Cache<Long, SensorInfo> sensors;
+
+    public SensorRegistry(SensorRepository sensorRepository,
+                          @Value("${weather.cache.sensor.max-size:100000}") long maxSize,
+                          @Value("${weather.cache.sensor.ttl:PT30M}") Duration ttl) {
+        this.sensorRepository = sensorRepository;
+        this.sensors = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<SensorInfo> find(Long sensorId) {
+        return Optional.ofNullable(sensors.get(sensorId,
+                id -> sensorRepository.findBySensorId(id).map(SensorInfo::of).orElse(null)));
+    }
+
+    public Map<Long, SensorInfo> findAll(Collection<Long> sensorIds) {
+        return sensors.getAll(sensorIds, missing -> sensorRepository.findSensorsBySensorIds(new ArrayList<>(missing)).stream()
+                .collect(Collectors.toMap(Sensor::getSensorId, SensorInfo::of, (first, second) -> first)));
+    }
+
+    public void register(Sensor sensor) {
+        sensors.put(sensor.getSensorId(), SensorInfo.of(sensor));
+    }
+
+    public CacheStatsDto stats() {
+        CacheStats stats = sensors.stats();
+        return new CacheStatsDto("sensors", sensors.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount());
+    }
+}
@@ -1,40 +1,92 @@
 package com.weather.statistics.controller;
 
+import com.weather.statistics.cache.QueryResultCache;
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.dto.BatchRequestDto;
+import com.weather.statistics.dto.BulkSensorRequestDto;
 import com.weather.statistics.dto.RequestDto;
 import com.weather.statistics.dto.ResponseDto;
 import com.weather.statistics.exception.InvalidDateRangeException;
 import com.weather.statistics.exception.InvalidSensorException;
 import com.weather.statistics.exception.InvalidStatisticException;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.IngestQueue;
+import com.weather.statistics.ingest.ReadingBatch;
+import com.weather.statistics.ingest.ReadingBatchCodec;
+import com.weather.statistics.query.ExportFormat;
+import com.weather.statistics.query.MetricExporter;
 import com.weather.statistics.service.WeatherService;
+import com.weather.statistics.subscription.SubscriptionHub;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/weather")
 @Validated
 public class WeatherController {
 
+    private static final Pattern INTERVAL = Pattern.compile("(\\d{1,6})([smhd])");
+
     private WeatherService weatherService;
+    private IngestQueue ingestQueue;
+    private SensorRegistry sensorRegistry;
+    private QueryResultCache queryResultCache;
+    private MetricExporter metricExporter;
+    private HotStore hotStore;
+    private SubscriptionHub subscriptionHub;
     @Autowired
-    public WeatherController(WeatherService weatherService) {
+    public WeatherController(WeatherService weatherService, IngestQueue ingestQueue, SensorRegistry sensorRegistry,
+                             QueryResultCache queryResultCache, MetricExporter metricExporter, HotStore hotStore,
+                             SubscriptionHub subscriptionHub) {
         this.weatherService = weatherService;
+        this.ingestQueue = ingestQueue;
+        this.sensorRegistry = sensorRegistry;
+        this.queryResultCache = queryResultCache;
+        this.metricExporter = metricExporter;
+        this.hotStore = hotStore;
+        this.subscriptionHub = subscriptionHub;
     }
 
     @PostMapping("/create")
     public ResponseEntity<ResponseDto> saveSensorData(@RequestBody @Valid RequestDto requestDto){
 
-        ResponseDto responseDto = weatherService.sensorData(requestDto);
+        if (ingestQueue.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ingestQueue.submit(requestDto));
+        }
+
+        return createdResponse(weatherService.sensorData(requestDto));
+    }
+
+    /**
+     * Binary form of /create, chosen by Content-Type; see {@link ReadingBatchCodec} for the format.
+     */
+    @PostMapping(value = "/create", consumes = ReadingBatchCodec.MEDIA_TYPE)
+    public ResponseEntity<ResponseDto> saveSensorReadings(@RequestBody ReadingBatch readings) {
+
+        if (ingestQueue.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ingestQueue.submit(readings));
+        }
+
+        return createdResponse(weatherService.sensorData(readings));
+    }
+
+    private ResponseEntity<ResponseDto> createdResponse(ResponseDto responseDto) {
         if ("201".equals(responseDto.getStatus())) {
             return ResponseEntity.status(HttpStatus.CREATED).body(responseDto);
         } else if ("200".equals(responseDto.getStatus())) {
@@ -44,27 +96,79 @@ public class WeatherController {
         }
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<ResponseDto> saveSensorDataBatch(@RequestBody @Valid BatchRequestDto batchRequestDto) {
+        return ResponseEntity.ok(weatherService.batchSensorData(batchRequestDto));
+    }
+
+    @PostMapping("/sensors/bulk")
+    public ResponseEntity<ResponseDto> registerSensors(@RequestBody @Valid BulkSensorRequestDto bulkSensorRequestDto) {
+        return ResponseEntity.ok(weatherService.registerSensors(bulkSensorRequestDto));
+    }
+
+    @GetMapping("/ingest/stats")
+    public ResponseEntity<ResponseDto> getIngestStats() {
+        return ResponseEntity.ok(new ResponseDto("200", "Ingest queue stats", ingestQueue.stats()));
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<ResponseDto> getCacheStats() {
+        return ResponseEntity.ok(new ResponseDto("200", "Cache stats", List.of(sensorRegistry.stats(), queryResultCache.stats(), hotStore.stats())));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReadings(
+            @RequestParam List<Long> sensorIds,
+            @RequestParam List<String> metrics,
+            @RequestParam(required = false) String startDateStr,
+            @RequestParam(required = false) String endDateStr,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        ExportFormat exportFormat = ExportFormat.from(format);
+        LocalDateTime endDate = endDateStr == null ? LocalDateTime.now() : parseDate(endDateStr);
+        LocalDateTime startDate = startDateStr == null ? endDate.minusDays(7) : parseDate(startDateStr);
+
+        StreamingResponseBody body = out -> metricExporter.export(sensorIds, metrics, startDate, endDate, exportFormat, out);
+        return ResponseEntity.ok().contentType(exportFormat.getMediaType()).body(body);
+    }
+
+    /**
+     * Server-sent events with the readings committed for {@code sensorIds} and {@code metrics}.
+     */
+    @GetMapping("/subscribe")
+    public SseEmitter subscribe(@RequestParam List<Long> sensorIds, @RequestParam List<String> metrics) {
+        return subscriptionHub.subscribe(sensorIds, metrics);
+    }
+
+    @GetMapping("/subscribe/stats")
+    public ResponseEntity<ResponseDto> getSubscriptionStats() {
+        return ResponseEntity.ok(new ResponseDto("200", "Live subscription stats", subscriptionHub.stats()));
+    }
+
     @GetMapping("/metrics")
     public ResponseEntity<ResponseDto> getSensorMetrics(
             @RequestParam List<Long> sensorIds,
             @RequestParam List<String> metrics,
             @RequestParam String statistic,
             @RequestParam(required = false) String startDateStr,
-            @RequestParam(required = false) String endDateStr) {
+            @RequestParam(required = false) String endDateStr,
+            @RequestParam(required = false) String interval,
+            @RequestParam(required = false) Integer maxPoints) {
 
         LocalDateTime startDate;
         LocalDateTime endDate;
 
             if (startDateStr == null || endDateStr == null) {
-                endDate = LocalDateTime.now();
+                endDate = queryResultCache.defaultWindowEnd(LocalDateTime.now());
                 startDate = endDate.minusDays(7);
             } else {
                 startDate = parseDate(startDateStr);
                 endDate = parseDate(endDateStr);
             }
 
-            Map<Long, Map<String, Double>> result = weatherService.querySensorData(
-                    sensorIds, metrics, statistic, startDate, endDate);
+            Map<Long, ?> result = interval == null
+                    ? weatherService.querySensorData(sensorIds, metrics, statistic, startDate, endDate)
+                    : weatherService.querySensorSeries(sensorIds, metrics, statistic, startDate, endDate, parseInterval(interval), maxPoints);
 
             if (result.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -75,6 +179,24 @@ public class WeatherController {
             return ResponseEntity.ok(responseDto);
     }
 
+    public Duration parseInterval(String interval) {
+        Matcher matcher = INTERVAL.matcher(interval);
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+            throw new IllegalStateException("Interval must be a positive number followed by s, m, h or d, e.g. 15m or 1h");
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            default:
+                return Duration.ofDays(amount);
+        }
+    }
+
     public LocalDateTime parseDate(String dateString) {
         DateTimeFormatter[] formatters = new DateTimeFormatter[]{
                 DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
@@ -0,0 +1,16 @@
+package com.weather.statistics.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchRequestDto {
+    @NotNull(message = "Sensor list is required")
+    private List<RequestDto> sensorList;
+}
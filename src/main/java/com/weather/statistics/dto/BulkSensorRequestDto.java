@@ -0,0 +1,19 @@
+package com.weather.statistics.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkSensorRequestDto {
+    @NotNull(message = "Sensor list is required")
+    @Size(max = 10000, message = "At most 10000 sensors can be registered at once")
+    private List<@NotNull(message = "Sensor list cannot contain null entries") @Valid SensorDto> sensorList;
+}
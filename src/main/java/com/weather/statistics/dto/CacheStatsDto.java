@@ -0,0 +1,25 @@
+package com.weather.statistics.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatsDto {
+    private String name;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    // Only known for caches that hold their own arrays, such as the hot store.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long memoryBytes;
+
+    public CacheStatsDto(String name, long size, long hitCount, long missCount, double hitRate, long evictionCount) {
+        this(name, size, hitCount, missCount, hitRate, evictionCount, null);
+    }
+}
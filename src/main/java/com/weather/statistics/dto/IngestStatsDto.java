@@ -0,0 +1,18 @@
+package com.weather.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestStatsDto {
+    private boolean enabled;
+    private int depth;
+    private int capacity;
+    private long drained;
+    private long rejected;
+    private long failed;
+    private double drainRatePerSecond;
+}
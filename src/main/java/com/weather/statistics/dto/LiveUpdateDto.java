@@ -0,0 +1,25 @@
+package com.weather.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Readings of one sensor and type received since the previous live update: the most recently
+ * recorded one, and count, min, max and average over all of them, to merge into earlier results.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LiveUpdateDto {
+    private Long sensorId;
+    private String type;
+    private Double data;
+    private LocalDateTime recordedTime;
+    private long count;
+    private double min;
+    private double max;
+    private double average;
+}
@@ -0,0 +1,18 @@
+package com.weather.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MetricAggregateDto {
+    private Long sensorId;
+    private String type;
+    private Long count;
+    private Double sum;
+    private Double min;
+    private Double max;
+    private Double sumOfSquares;
+}
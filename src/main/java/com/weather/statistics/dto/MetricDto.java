@@ -1,5 +1,6 @@
 package com.weather.statistics.dto;
 
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,4 +15,10 @@ public class MetricDto {
     private String type;
     private Double data;
     private LocalDateTime recordedTime;
+    @Size(max = 64, message = "Reading ID must be at most 64 characters")
+    private String readingId;
+
+    public MetricDto(String type, Double data, LocalDateTime recordedTime) {
+        this(type, data, recordedTime, null);
+    }
 }
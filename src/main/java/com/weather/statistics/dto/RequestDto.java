@@ -1,5 +1,6 @@
 package com.weather.statistics.dto;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
@@ -18,6 +19,7 @@ public class RequestDto {
     @Size(min = 2, max = 100, message = "Location must be between 2 and 100 characters")
     private String location;
     @NotNull(message = "Metric list is required")
+    @Valid
     private List<MetricDto> metricList;
 
 }
@@ -0,0 +1,15 @@
+package com.weather.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SensorBatchResultDto {
+    private Long sensorId;
+    private int accepted;
+    private int rejected;
+    private String message;
+}
@@ -0,0 +1,15 @@
+package com.weather.statistics.dto;
+
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SensorDto {
+    private Long sensorId;
+    @Size(min = 2, max = 100, message = "Location must be between 2 and 100 characters")
+    private String location;
+}
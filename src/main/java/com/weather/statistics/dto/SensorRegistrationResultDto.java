@@ -0,0 +1,19 @@
+package com.weather.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SensorRegistrationResultDto {
+    public static final String CREATED = "created";
+    public static final String EXISTING = "existing";
+    public static final String CONFLICT = "conflict";
+    public static final String INVALID = "invalid";
+
+    private Long sensorId;
+    private String status;
+    private String message;
+}
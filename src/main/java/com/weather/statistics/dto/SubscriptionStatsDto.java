@@ -0,0 +1,16 @@
+package com.weather.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SubscriptionStatsDto {
+    private int subscribers;
+    private int maxSubscribers;
+    private long readingsQueued;
+    private long eventsSent;
+    private long dropped;
+}
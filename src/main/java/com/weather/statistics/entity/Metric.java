@@ -12,10 +12,16 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_metric_sensor_time", columnList = "sensor_data_id, recorded_time")
+})
 public class Metric {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "metric_seq")
+    @SequenceGenerator(name = "metric_seq", sequenceName = "metric_seq", allocationSize = 50)
     private Long id;
+    @Convert(converter = MetricTypeConverter.class)
+    @Column(name = "type_id")
     private String type;
     private Double data;
     @JsonIgnore
@@ -24,5 +30,8 @@ public class Metric {
     private Sensor sensor;
     @Column(name = "recorded_time")
     private LocalDateTime recordedTime;
+    @JsonIgnore
+    @Column(name = "reading_key", unique = true, length = 320)
+    private String readingKey;
 
 }
@@ -0,0 +1,50 @@
+package com.weather.statistics.entity;
+
+import com.weather.statistics.rollup.RollupGranularity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+// Column defaults let a bucket be created by naming only its key, see MetricRollupRepository#createBucketIfAbsent.
+@Table(name = "metric_rollup", uniqueConstraints = @UniqueConstraint(name = "uk_metric_rollup_bucket",
+        columnNames = {"sensor_id", "type_id", "granularity", "bucket_start"}))
+public class MetricRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "sensor_id")
+    private Long sensorId;
+    @Convert(converter = MetricTypeConverter.class)
+    @Column(name = "type_id")
+    private String type;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private RollupGranularity granularity;
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+    @Column(name = "reading_count")
+    @ColumnDefault("0")
+    private long readingCount;
+    @Column(name = "sum_value")
+    @ColumnDefault("0")
+    private double sumValue;
+    @Column(name = "min_value")
+    @ColumnDefault("0")
+    private double minValue;
+    @Column(name = "max_value")
+    @ColumnDefault("0")
+    private double maxValue;
+    @Column(name = "m2_value")
+    @ColumnDefault("0")
+    private double m2Value;
+    @Column(name = "sketch", length = 65535)
+    private byte[] sketch;
+}
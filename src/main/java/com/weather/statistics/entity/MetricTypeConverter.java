@@ -0,0 +1,44 @@
+package com.weather.statistics.entity;
+
+import com.weather.statistics.cache.MetricTypeRegistry;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Stores metric type names as their {@link MetricTypeRegistry} IDs. Queries keep comparing and
+ * grouping by {@code type}; the database sees an integer column. Names that were never
+ * registered map to an ID no row has, so they simply match nothing.
+ * <p>
+ * The registry is looked up on first use: it depends on a repository, which needs the entity
+ * manager factory that creates this converter.
+ */
+@Converter
+public class MetricTypeConverter implements AttributeConverter<String, Integer> {
+
+    private final ObjectProvider<MetricTypeRegistry> registryProvider;
+    private volatile MetricTypeRegistry metricTypeRegistry;
+
+    public MetricTypeConverter(ObjectProvider<MetricTypeRegistry> registryProvider) {
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String type) {
+        return type == null ? null : registry().idOf(type);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer typeId) {
+        return typeId == null ? null : registry().nameOf(typeId);
+    }
+
+    private MetricTypeRegistry registry() {
+        MetricTypeRegistry registry = metricTypeRegistry;
+        if (registry == null) {
+            registry = registryProvider.getObject();
+            metricTypeRegistry = registry;
+        }
+        return registry;
+    }
+}
@@ -1,6 +1,7 @@
 package com.weather.statistics.exception;
 
 import com.weather.statistics.dto.ResponseDto;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.ObjectError;
@@ -28,6 +29,30 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handleIngestQueueFull(IngestQueueFullException ex) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.put("error", "Service Unavailable");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+
+    @ExceptionHandler(SubscriberLimitException.class)
+    public ResponseEntity<Map<String, Object>> handleSubscriberLimit(SubscriberLimitException ex) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.put("error", "Service Unavailable");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ResponseDto> handleValidationExceptions(MethodArgumentNotValidException ex) {
@@ -75,7 +100,7 @@ public class GlobalExceptionHandler {
         response.put("message", "The statistic provided is invalid.");
 
         Map<String, String> details = new HashMap<>();
-        details.put("statistic", "Statistic must be one of the following: 'average', 'min', 'max', 'sum'.");
+        details.put("statistic", "Statistic must be one of the following: 'average', 'min', 'max', 'sum', 'count', 'stddev', or a percentile such as 'p50', 'p95', 'p99'.");
         response.put("details", details);
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
@@ -0,0 +1,14 @@
+package com.weather.statistics.exception;
+
+public class SubscriberLimitException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public SubscriberLimitException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
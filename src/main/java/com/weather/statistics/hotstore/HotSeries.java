@@ -0,0 +1,139 @@
+package com.weather.statistics.hotstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Readings of one (sensor, type) in chunks of parallel {@code long[]} timestamps (epoch
+ * microseconds) and {@code double[]} values. Chunks are appended in arrival order and remember
+ * their time span, so scans skip chunks outside the range and binary-search chunks whose
+ * readings arrived in time order. A chunk starts small and doubles until it holds
+ * {@link #CHUNK_SIZE} readings, so sparse series do not pay for full chunks.
+ */
+class HotSeries {
+
+    static final int CHUNK_SIZE = 4096;
+    static final int INITIAL_CHUNK_CAPACITY = 64;
+    // A timestamp and a value per slot.
+    static final int BYTES_PER_SLOT = Long.BYTES + Double.BYTES;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final AtomicLong memoryBytes;
+
+    /**
+     * @param memoryBytes running total of the bytes held by the arrays of every series, adjusted
+     *                    as chunks grow and are dropped
+     */
+    HotSeries(AtomicLong memoryBytes) {
+        this.memoryBytes = memoryBytes;
+    }
+
+    interface ValueConsumer {
+        void accept(long time, double value);
+    }
+
+    /**
+     * Appends a reading. Whenever a new chunk is started, chunks whose newest reading is older
+     * than {@code cutoff} are dropped; returns how many readings were dropped.
+     */
+    int append(long time, double value, long cutoff) {
+        lock.writeLock().lock();
+        try {
+            int dropped = 0;
+            Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (last == null || last.size == CHUNK_SIZE) {
+                while (!chunks.isEmpty() && chunks.get(0).maxTime < cutoff) {
+                    Chunk removed = chunks.remove(0);
+                    dropped += removed.size;
+                    memoryBytes.addAndGet(-(long) removed.capacity() * BYTES_PER_SLOT);
+                }
+                last = new Chunk();
+                chunks.add(last);
+                memoryBytes.addAndGet((long) last.capacity() * BYTES_PER_SLOT);
+            } else if (last.size == last.capacity()) {
+                int capacity = last.capacity();
+                last.grow();
+                memoryBytes.addAndGet((long) (last.capacity() - capacity) * BYTES_PER_SLOT);
+            }
+            last.append(time, value);
+            return dropped;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Feeds every reading with {@code from <= time <= to} to the consumer.
+     */
+    void scan(long from, long to, ValueConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (Chunk chunk : chunks) {
+                if (chunk.maxTime < from || chunk.minTime > to) {
+                    continue;
+                }
+                if (chunk.sorted) {
+                    for (int i = chunk.lowerBound(from); i < chunk.size && chunk.times[i] <= to; i++) {
+                        consumer.accept(chunk.times[i], chunk.values[i]);
+                    }
+                } else {
+                    for (int i = 0; i < chunk.size; i++) {
+                        if (chunk.times[i] >= from && chunk.times[i] <= to) {
+                            consumer.accept(chunk.times[i], chunk.values[i]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class Chunk {
+        private long[] times = new long[INITIAL_CHUNK_CAPACITY];
+        private double[] values = new double[INITIAL_CHUNK_CAPACITY];
+        private int size;
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private boolean sorted = true;
+
+        private int capacity() {
+            return times.length;
+        }
+
+        private void grow() {
+            int capacity = Math.min(times.length * 2, CHUNK_SIZE);
+            times = Arrays.copyOf(times, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        private void append(long time, double value) {
+            if (time < maxTime) {
+                sorted = false;
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+
+        private int lowerBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
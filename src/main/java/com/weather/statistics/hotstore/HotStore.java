@@ -0,0 +1,155 @@
+package com.weather.statistics.hotstore;
+
+import com.weather.statistics.aggregation.MetricAggregator;
+import com.weather.statistics.aggregation.SeriesAggregator;
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.dto.CacheStatsDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.ingest.MetricsWrittenEvent;
+import com.weather.statistics.storage.ReadingStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional in-memory tier holding the most recent readings per (sensor, type) in primitive
+ * columns. It is loaded from the database before the server starts taking requests and then
+ * fed by committed writes, so any query starting inside the retention window can be answered
+ * without touching the database.
+ */
+@Component
+public class HotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(HotStore.class);
+
+    private final ReadingStore readingStore;
+    private final MetricTypeRegistry metricTypeRegistry;
+    private final boolean enabled;
+    private final Duration retention;
+    private final Map<Long, Map<String, HotSeries>> series = new ConcurrentHashMap<>();
+    private final AtomicLong readings = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private volatile boolean ready;
+
+    public HotStore(ReadingStore readingStore, MetricTypeRegistry metricTypeRegistry,
+                    @Value("${weather.hotstore.enabled:false}") boolean enabled,
+                    @Value("${weather.hotstore.retention:P8D}") Duration retention) {
+        this.readingStore = readingStore;
+        this.metricTypeRegistry = metricTypeRegistry;
+        this.enabled = enabled;
+        this.retention = retention;
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        readingStore.forEachReadingSince(LocalDateTime.now().minus(retention),
+                reading -> append(reading.getSensorId(), reading.getType(), reading.getRecordedTime(), reading.getData()));
+        ready = true;
+        log.info("Hot store loaded {} readings in {} ms", readings.get(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @TransactionalEventListener
+    public void onMetricsWritten(MetricsWrittenEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (Metric metric : event.metrics()) {
+            append(metric.getSensor().getSensorId(), metric.getType(), metric.getRecordedTime(), metric.getData());
+        }
+    }
+
+    /**
+     * Whether every reading from {@code start} onwards is held here.
+     */
+    public boolean covers(LocalDateTime start) {
+        if (!enabled) {
+            return false;
+        }
+        boolean covered = ready && !start.isBefore(LocalDateTime.now().minus(retention));
+        (covered ? hits : misses).incrementAndGet();
+        return covered;
+    }
+
+    public MetricAggregator aggregate(List<Long> sensorIds, List<String> metrics, LocalDateTime start, LocalDateTime end,
+                                      boolean withQuantiles) {
+        MetricAggregator aggregator = new MetricAggregator(metricTypeRegistry, withQuantiles);
+        scan(sensorIds, metrics, start, end, (sensorId, type, typeId, time, value) -> aggregator.add(sensorId, typeId, value));
+        return aggregator;
+    }
+
+    public SeriesAggregator series(List<Long> sensorIds, List<String> metrics, LocalDateTime start, LocalDateTime end,
+                                   Duration interval, boolean withQuantiles) {
+        SeriesAggregator aggregator = new SeriesAggregator(interval, withQuantiles);
+        scan(sensorIds, metrics, start, end, (sensorId, type, typeId, time, value) -> aggregator.add(sensorId, type, toTime(time), value));
+        return aggregator;
+    }
+
+    public CacheStatsDto stats() {
+        long total = hits.get() + misses.get();
+        return new CacheStatsDto("hotStore", readings.get(), hits.get(), misses.get(),
+                total == 0 ? 0 : (double) hits.get() / total, evicted.get(), memoryBytes.get());
+    }
+
+    private void append(Long sensorId, String type, LocalDateTime recordedTime, double value) {
+        long cutoff = toMicros(LocalDateTime.now().minus(retention));
+        long time = toMicros(recordedTime);
+        if (time < cutoff) {
+            return;
+        }
+        int dropped = series.computeIfAbsent(sensorId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(type, t -> new HotSeries(memoryBytes))
+                .append(time, value, cutoff);
+        readings.addAndGet(1 - dropped);
+        evicted.addAndGet(dropped);
+    }
+
+    private void scan(List<Long> sensorIds, List<String> metrics, LocalDateTime start, LocalDateTime end, ReadingConsumer consumer) {
+        long from = toMicros(start);
+        long to = toMicros(end);
+        for (Long sensorId : new LinkedHashSet<>(sensorIds)) {
+            Map<String, HotSeries> types = series.get(sensorId);
+            if (types == null) {
+                continue;
+            }
+            for (String type : new LinkedHashSet<>(metrics)) {
+                HotSeries hotSeries = types.get(type);
+                if (hotSeries != null) {
+                    int typeId = metricTypeRegistry.idOf(type);
+                    hotSeries.scan(from, to, (time, value) -> consumer.accept(sensorId, type, typeId, time, value));
+                }
+            }
+        }
+    }
+
+    // The database keeps microsecond precision, so range checks here use the same resolution.
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime toTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private interface ReadingConsumer {
+        void accept(Long sensorId, String type, int typeId, long time, double value);
+    }
+}
@@ -0,0 +1,277 @@
+package com.weather.statistics.ingest;
+
+import com.weather.statistics.dto.BatchRequestDto;
+import com.weather.statistics.dto.IngestStatsDto;
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.RequestDto;
+import com.weather.statistics.dto.ResponseDto;
+import com.weather.statistics.dto.SensorBatchResultDto;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.exception.IngestQueueFullException;
+import com.weather.statistics.exception.SensorLocationConflictException;
+import com.weather.statistics.service.WeatherService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Write-behind mode for /weather/create: readings are validated like a synchronous write,
+ * including the accepted time window, and parked in a bounded
+ * array-backed queue, and writer threads drain them through {@link WeatherService#batchSensorData}
+ * in batches. Binary requests are queued whole, still in their columns, and written through
+ * {@link WeatherService#sensorData(ReadingBatch)}. When the queue is full callers are told to retry
+ * instead of waiting on the database.
+ */
+@Component
+public class IngestQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestQueue.class);
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final WeatherService weatherService;
+    private final ReadingValidator readingValidator;
+    private final boolean enabled;
+    private final int capacity;
+    private final int writers;
+    private final int batchSize;
+    private final long retryAfterSeconds;
+    private final boolean virtualThreads;
+    private final ArrayBlockingQueue<Pending> queue;
+    private final AtomicInteger queuedReadings = new AtomicInteger();
+    private CountDownLatch writersDone = new CountDownLatch(0);
+
+    private final AtomicLong drained = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Object rateLock = new Object();
+    private long rateWindowStart = System.nanoTime();
+    private long rateWindowCount;
+    private double drainRate;
+
+    private volatile boolean running;
+
+    public IngestQueue(WeatherService weatherService, ReadingValidator readingValidator,
+                       @Value("${weather.ingest.write-behind.enabled:false}") boolean enabled,
+                       @Value("${weather.ingest.write-behind.capacity:10000}") int capacity,
+                       @Value("${weather.ingest.write-behind.writers:2}") int writers,
+                       @Value("${weather.ingest.write-behind.batch-size:500}") int batchSize,
+                       @Value("${weather.ingest.write-behind.retry-after-seconds:1}") long retryAfterSeconds,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.weatherService = weatherService;
+        this.readingValidator = readingValidator;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.writers = writers;
+        this.batchSize = batchSize;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.virtualThreads = virtualThreads;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writersDone = new CountDownLatch(writers);
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ingest-writer-");
+        executor.setVirtualThreads(virtualThreads);
+        for (int i = 0; i < writers; i++) {
+            executor.execute(() -> {
+                try {
+                    drainLoop();
+                } finally {
+                    writersDone.countDown();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops accepting readings and lets the writers flush whatever is still queued.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writersDone.await(30, TimeUnit.SECONDS);
+        if (!queue.isEmpty()) {
+            log.warn("Ingest queue shut down with {} readings still queued", queuedReadings.get());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ResponseDto submit(RequestDto requestDto) {
+        List<MetricDto> metricList = requestDto.getMetricList();
+        readingValidator.validateSensor(requestDto.getSensorId(), requestDto.getLocation());
+        readingValidator.validateReadings(metricList);
+        readingValidator.validateRecordedTimes(metricList.stream().map(MetricDto::getRecordedTime).toList());
+
+        synchronized (this) {
+            reserve(metricList.size());
+            for (MetricDto metric : metricList) {
+                queue.add(new PendingReading(requestDto.getSensorId(), requestDto.getLocation(), metric));
+            }
+        }
+        return new ResponseDto("202", "Readings accepted for processing", metricList.size());
+    }
+
+    public ResponseDto submit(ReadingBatch readings) {
+        readingValidator.validateSensor(readings.getSensorId(), readings.getLocation());
+        readingValidator.validateRecordedTimes(IntStream.range(0, readings.size()).mapToObj(readings::getRecordedTime).toList());
+
+        synchronized (this) {
+            reserve(readings.size());
+            if (readings.size() > 0) {
+                queue.add(new PendingBatch(readings));
+            }
+        }
+        return new ResponseDto("202", "Readings accepted for processing", readings.size());
+    }
+
+    public IngestStatsDto stats() {
+        double rate;
+        synchronized (rateLock) {
+            rate = System.nanoTime() - rateWindowStart > 2 * RATE_WINDOW_NANOS ? 0 : drainRate;
+        }
+        return new IngestStatsDto(enabled, queuedReadings.get(), capacity, drained.get(), rejected.get(), failed.get(), rate);
+    }
+
+    // Capacity counts readings; every queued element holds at least one, so the queue itself never fills first.
+    private void reserve(int readings) {
+        if (!running || capacity - queuedReadings.get() < readings) {
+            throw new IngestQueueFullException("Ingest queue is full, retry later", retryAfterSeconds);
+        }
+        queuedReadings.addAndGet(readings);
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending next = queue.poll(100, TimeUnit.MILLISECONDS);
+                int readings = 0;
+                while (next != null) {
+                    batch.add(next);
+                    readings += next.size();
+                    next = readings < batchSize ? queue.poll() : null;
+                }
+                if (readings == 0) {
+                    continue;
+                }
+                queuedReadings.addAndGet(-readings);
+                write(batch);
+                recordDrained(readings);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        Map<SensorKey, RequestDto> requests = new LinkedHashMap<>();
+        int readings = 0;
+        for (Pending pending : batch) {
+            if (pending instanceof PendingBatch binary) {
+                write(binary.readings());
+                continue;
+            }
+            PendingReading reading = (PendingReading) pending;
+            requests.computeIfAbsent(new SensorKey(reading.sensorId(), reading.location()),
+                            key -> new RequestDto(reading.sensorId(), reading.location(), new ArrayList<>()))
+                    .getMetricList().add(reading.metric());
+            readings++;
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        try {
+            ResponseDto response = weatherService.batchSensorData(new BatchRequestDto(new ArrayList<>(requests.values())));
+            for (Object result : (List<?>) response.getData()) {
+                SensorBatchResultDto sensorResult = (SensorBatchResultDto) result;
+                if (sensorResult.getRejected() > 0) {
+                    rejected.addAndGet(sensorResult.getRejected());
+                    log.warn("Write-behind rejected {} readings for sensor {}: {}", sensorResult.getRejected(),
+                            sensorResult.getSensorId(), Objects.toString(sensorResult.getMessage(), "invalid or duplicate readings"));
+                }
+            }
+        } catch (RuntimeException e) {
+            failed.addAndGet(readings);
+            log.error("Write-behind batch of {} readings failed", readings, e);
+        }
+    }
+
+    private void write(ReadingBatch readings) {
+        try {
+            Sensor sensor = (Sensor) weatherService.sensorData(readings).getData();
+            int skipped = readings.size() - sensor.getMetricList().size();
+            if (skipped > 0) {
+                rejected.addAndGet(skipped);
+                log.warn("Write-behind rejected {} readings for sensor {}: duplicate readings", skipped, readings.getSensorId());
+            }
+        } catch (IllegalStateException | SensorLocationConflictException e) {
+            rejected.addAndGet(readings.size());
+            log.warn("Write-behind rejected {} readings for sensor {}: {}", readings.size(), readings.getSensorId(), e.getMessage());
+        } catch (RuntimeException e) {
+            failed.addAndGet(readings.size());
+            log.error("Write-behind request of {} readings failed", readings.size(), e);
+        }
+    }
+
+    private void recordDrained(int count) {
+        drained.addAndGet(count);
+        synchronized (rateLock) {
+            long now = System.nanoTime();
+            if (now - rateWindowStart >= RATE_WINDOW_NANOS) {
+                drainRate = rateWindowCount * (double) TimeUnit.SECONDS.toNanos(1) / (now - rateWindowStart);
+                rateWindowStart = now;
+                rateWindowCount = 0;
+            }
+            rateWindowCount += count;
+        }
+    }
+
+    private sealed interface Pending permits PendingReading, PendingBatch {
+        int size();
+    }
+
+    private record PendingReading(Long sensorId, String location, MetricDto metric) implements Pending {
+        @Override
+        public int size() {
+            return 1;
+        }
+    }
+
+    private record PendingBatch(ReadingBatch readings) implements Pending {
+        @Override
+        public int size() {
+            return readings.size();
+        }
+    }
+
+    private record SensorKey(Long sensorId, String location) {
+    }
+}
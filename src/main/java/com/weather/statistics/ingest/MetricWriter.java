@@ -0,0 +1,44 @@
+package com.weather.statistics.ingest;
+
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.storage.ReadingStore;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Transaction boundary for storing readings. Metric types are registered before the transaction
+ * opens, so registering one never needs a second connection. Everything derived from them (rollups, the hot
+ * store, cached results, subscribers) is updated from {@link MetricsWrittenEvent} once the
+ * transaction commits.
+ */
+@Component
+public class MetricWriter {
+
+    private final ReadingStore readingStore;
+    private final MetricTypeRegistry metricTypeRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaction;
+
+    public MetricWriter(ReadingStore readingStore, MetricTypeRegistry metricTypeRegistry, ApplicationEventPublisher eventPublisher,
+                        PlatformTransactionManager transactionManager) {
+        this.readingStore = readingStore;
+        this.metricTypeRegistry = metricTypeRegistry;
+        this.eventPublisher = eventPublisher;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    public List<Metric> write(List<Metric> metrics) {
+        metricTypeRegistry.register(metrics.stream().map(Metric::getType).collect(Collectors.toSet()));
+        return transaction.execute(status -> {
+            List<Metric> saved = readingStore.append(metrics);
+            eventPublisher.publishEvent(new MetricsWrittenEvent(saved));
+            return saved;
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package com.weather.statistics.ingest;
+
+import com.weather.statistics.entity.Metric;
+
+import java.util.List;
+
+/**
+ * Published by {@link MetricWriter} inside the write transaction; listeners that maintain
+ * derived state outside the database should react after commit.
+ */
+public record MetricsWrittenEvent(List<Metric> metrics) {
+}
@@ -0,0 +1,112 @@
+package com.weather.statistics.ingest;
+
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.RequestDto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Readings of one sensor as sent in the binary ingestion format, kept in columns: the table of
+ * metric types named in the request and, per reading, an index into that table, the recorded
+ * time in epoch milliseconds and the value. The service builds metric rows straight from the
+ * columns, without a {@link MetricDto} per reading.
+ * <p>
+ * Recorded times are instants and are converted to the server's local time, the same clock
+ * readings without a time are stamped with.
+ */
+public final class ReadingBatch {
+
+    /**
+     * Recorded time of a reading that the server stamps on arrival.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+    public static final int MAX_TYPES = 255;
+
+    private final Long sensorId;
+    private final String location;
+    final String[] types;
+    final byte[] typeIndexes;
+    final long[] times;
+    final double[] values;
+
+    ReadingBatch(Long sensorId, String location, String[] types, byte[] typeIndexes, long[] times, double[] values) {
+        this.sensorId = sensorId;
+        this.location = location;
+        this.types = types;
+        this.typeIndexes = typeIndexes;
+        this.times = times;
+        this.values = values;
+    }
+
+    /**
+     * Packs a JSON request into columns; reading IDs are not part of the binary format and are dropped.
+     */
+    public static ReadingBatch from(RequestDto requestDto) {
+        List<MetricDto> metricList = requestDto.getMetricList();
+        Map<String, Integer> typeTable = new LinkedHashMap<>();
+        byte[] typeIndexes = new byte[metricList.size()];
+        long[] times = new long[metricList.size()];
+        double[] values = new double[metricList.size()];
+        for (int i = 0; i < metricList.size(); i++) {
+            MetricDto metricDto = metricList.get(i);
+            if (metricDto.getType() == null || metricDto.getData() == null) {
+                throw new IllegalArgumentException("Readings need a type and a value");
+            }
+            int typeIndex = typeTable.computeIfAbsent(metricDto.getType(), type -> typeTable.size());
+            if (typeIndex >= MAX_TYPES) {
+                throw new IllegalArgumentException("At most " + MAX_TYPES + " metric types fit in one request");
+            }
+            typeIndexes[i] = (byte) typeIndex;
+            times[i] = metricDto.getRecordedTime() == null ? NO_TIME
+                    : metricDto.getRecordedTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            values[i] = metricDto.getData();
+        }
+        return new ReadingBatch(requestDto.getSensorId(), requestDto.getLocation(),
+                typeTable.keySet().toArray(new String[0]), typeIndexes, times, values);
+    }
+
+    /**
+     * The readings as a JSON request; reading IDs are left empty.
+     */
+    public RequestDto toRequestDto() {
+        List<MetricDto> metricList = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            metricList.add(new MetricDto(getType(i), getValue(i), getRecordedTime(i)));
+        }
+        return new RequestDto(sensorId, location, metricList);
+    }
+
+    public Long getSensorId() {
+        return sensorId;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public String getType(int reading) {
+        return types[typeIndexes[reading] & 0xff];
+    }
+
+    /**
+     * Recorded time in server local time, or null if the server stamps the reading.
+     */
+    public LocalDateTime getRecordedTime(int reading) {
+        long time = times[reading];
+        return time == NO_TIME ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    }
+
+    public double getValue(int reading) {
+        return values[reading];
+    }
+}
@@ -0,0 +1,131 @@
+package com.weather.statistics.ingest;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary ingestion format for /weather/create, sent as {@value #MEDIA_TYPE}. All numbers are
+ * big-endian; a request carries one sensor:
+ * <pre>
+ * u8          version, 1
+ * i64         sensor ID
+ * u16 + bytes location, UTF-8
+ * u8          number of metric types T, 1 to 255, then T times: u8 + bytes, the type name in UTF-8
+ * i32         number of readings N
+ * N x u8      type of each reading, an index into the type table
+ * N x i64     recorded time of each reading, epoch milliseconds, or Long.MIN_VALUE to stamp on arrival
+ * N x f64     value of each reading
+ * </pre>
+ * Each column is packed, so a reading costs 17 bytes and the columns are read in bulk into the
+ * arrays of a {@link ReadingBatch}. Type names are sent once per request rather than per reading.
+ */
+public final class ReadingBatchCodec {
+
+    public static final String MEDIA_TYPE = "application/x-weather-readings";
+    public static final int VERSION = 1;
+    public static final int MAX_READINGS = 100_000;
+    private static final int READING_BYTES = 1 + 8 + 8;
+    public static final int MAX_MESSAGE_BYTES = 1 + 8 + 2 + 0xffff + 1 + ReadingBatch.MAX_TYPES * 256 + 4
+            + MAX_READINGS * READING_BYTES;
+
+    private ReadingBatchCodec() {
+    }
+
+    public static byte[] encode(ReadingBatch batch) {
+        byte[] location = batch.getLocation().getBytes(StandardCharsets.UTF_8);
+        byte[][] types = new byte[batch.types.length][];
+        int typeBytes = 0;
+        for (int i = 0; i < types.length; i++) {
+            types[i] = batch.types[i].getBytes(StandardCharsets.UTF_8);
+            if (types[i].length > 0xff) {
+                throw new IllegalArgumentException("Metric type names are at most 255 bytes: " + batch.types[i]);
+            }
+            typeBytes += 1 + types[i].length;
+        }
+        if (location.length > 0xffff) {
+            throw new IllegalArgumentException("Location is too long");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 2 + location.length + 1 + typeBytes + 4 + batch.size() * READING_BYTES);
+        buffer.put((byte) VERSION);
+        buffer.putLong(batch.getSensorId());
+        buffer.putShort((short) location.length).put(location);
+        buffer.put((byte) types.length);
+        for (byte[] type : types) {
+            buffer.put((byte) type.length).put(type);
+        }
+        buffer.putInt(batch.size());
+        buffer.put(batch.typeIndexes);
+        buffer.asLongBuffer().put(batch.times);
+        buffer.position(buffer.position() + batch.size() * 8);
+        buffer.asDoubleBuffer().put(batch.values);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes one request; throws {@link IllegalArgumentException} if it is malformed.
+     */
+    public static ReadingBatch decode(byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        try {
+            int version = buffer.get() & 0xff;
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported format version " + version);
+            }
+            long sensorId = buffer.getLong();
+            String location = readString(buffer, buffer.getShort() & 0xffff);
+            if (location.length() < 2 || location.length() > 100) {
+                throw new IllegalArgumentException("Location must be between 2 and 100 characters");
+            }
+
+            String[] types = new String[buffer.get() & 0xff];
+            if (types.length == 0) {
+                throw new IllegalArgumentException("The type table is empty");
+            }
+            for (int i = 0; i < types.length; i++) {
+                types[i] = readString(buffer, buffer.get() & 0xff);
+                if (types[i].isBlank()) {
+                    throw new IllegalArgumentException("Metric types cannot be blank");
+                }
+            }
+
+            int count = buffer.getInt();
+            if (count < 0 || count > MAX_READINGS) {
+                throw new IllegalArgumentException("A request holds at most " + MAX_READINGS + " readings, got " + count);
+            }
+            if (buffer.remaining() != count * READING_BYTES) {
+                throw new IllegalArgumentException("Expected " + count * READING_BYTES + " bytes of readings, got " + buffer.remaining());
+            }
+            byte[] typeIndexes = new byte[count];
+            buffer.get(typeIndexes);
+            long[] times = new long[count];
+            buffer.asLongBuffer().get(times);
+            buffer.position(buffer.position() + count * 8);
+            double[] values = new double[count];
+            buffer.asDoubleBuffer().get(values);
+
+            for (int i = 0; i < count; i++) {
+                if ((typeIndexes[i] & 0xff) >= types.length) {
+                    throw new IllegalArgumentException("Reading " + i + " refers to type " + (typeIndexes[i] & 0xff)
+                            + ", the table has " + types.length);
+                }
+                if (!Double.isFinite(values[i])) {
+                    throw new IllegalArgumentException("Reading " + i + " has no finite value");
+                }
+            }
+            return new ReadingBatch(sensorId, location, types, typeIndexes, times, values);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Message ends early", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        if (buffer.remaining() < length) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
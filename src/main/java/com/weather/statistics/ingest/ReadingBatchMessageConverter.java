@@ -0,0 +1,46 @@
+package com.weather.statistics.ingest;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads {@link ReadingBatchCodec#MEDIA_TYPE} request bodies into a {@link ReadingBatch} and writes
+ * batches in the same format; Spring Boot adds converter beans to the MVC converters. Bodies larger
+ * than the biggest valid message are refused before they are decoded.
+ */
+@Component
+public class ReadingBatchMessageConverter extends AbstractHttpMessageConverter<ReadingBatch> {
+
+    public ReadingBatchMessageConverter() {
+        super(MediaType.parseMediaType(ReadingBatchCodec.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ReadingBatch.class == clazz;
+    }
+
+    @Override
+    protected ReadingBatch readInternal(Class<? extends ReadingBatch> clazz, HttpInputMessage inputMessage) throws IOException {
+        byte[] message = inputMessage.getBody().readNBytes(ReadingBatchCodec.MAX_MESSAGE_BYTES + 1);
+        if (message.length > ReadingBatchCodec.MAX_MESSAGE_BYTES) {
+            throw new HttpMessageNotReadableException("Binary readings message is too large", inputMessage);
+        }
+        try {
+            return ReadingBatchCodec.decode(message);
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Malformed binary readings: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(ReadingBatch readingBatch, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(ReadingBatchCodec.encode(readingBatch));
+    }
+}
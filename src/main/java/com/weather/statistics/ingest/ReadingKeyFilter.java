@@ -0,0 +1,95 @@
+package com.weather.statistics.ingest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, time-windowed record of recently stored reading keys per sensor. A hit is a definite
+ * duplicate and needs no database read; a miss is not proof of absence (the key may have been
+ * evicted or written before a restart), which is what the unique reading_key constraint is for.
+ * <p>
+ * Memory is bounded twice: per sensor by {@code max-keys-per-sensor}, and across all sensors by
+ * {@code max-keys}, past which the keys of the least recently used sensors are dropped whole.
+ */
+@Component
+public class ReadingKeyFilter {
+
+    private final int maxKeysPerSensor;
+    private final long windowMillis;
+    private final Cache<Long, SensorKeys> sensors;
+
+    public ReadingKeyFilter(@Value("${weather.ingest.dedup.max-keys-per-sensor:10000}") int maxKeysPerSensor,
+                            @Value("${weather.ingest.dedup.max-keys:1000000}") long maxKeys,
+                            @Value("${weather.ingest.dedup.window:PT24H}") Duration window) {
+        this.maxKeysPerSensor = maxKeysPerSensor;
+        this.windowMillis = window.toMillis();
+        this.sensors = Caffeine.newBuilder()
+                .maximumWeight(maxKeys)
+                .weigher((Long sensorId, SensorKeys keys) -> keys.size())
+                .expireAfterAccess(window)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    public boolean contains(Long sensorId, String readingKey) {
+        SensorKeys keys = sensors.getIfPresent(sensorId);
+        return keys != null && keys.contains(readingKey, System.currentTimeMillis());
+    }
+
+    public void addAll(Long sensorId, Collection<String> readingKeys) {
+        if (readingKeys.isEmpty()) {
+            return;
+        }
+        // Returning the entry from compute makes the cache weigh it again with its new key count.
+        sensors.asMap().compute(sensorId, (id, keys) -> {
+            SensorKeys updated = keys == null ? new SensorKeys() : keys;
+            updated.addAll(readingKeys, System.currentTimeMillis());
+            return updated;
+        });
+    }
+
+    /**
+     * Number of keys held across all sensors.
+     */
+    public long size() {
+        return sensors.asMap().values().stream().mapToLong(SensorKeys::size).sum();
+    }
+
+    private class SensorKeys {
+
+        private final LinkedHashMap<String, Long> seenAt = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxKeysPerSensor;
+            }
+        };
+
+        synchronized int size() {
+            return seenAt.size();
+        }
+
+        synchronized boolean contains(String readingKey, long now) {
+            Long time = seenAt.get(readingKey);
+            return time != null && now - time <= windowMillis;
+        }
+
+        synchronized void addAll(Collection<String> readingKeys, long now) {
+            Iterator<Long> oldest = seenAt.values().iterator();
+            while (oldest.hasNext() && now - oldest.next() > windowMillis) {
+                oldest.remove();
+            }
+            for (String readingKey : readingKeys) {
+                seenAt.remove(readingKey);
+                seenAt.put(readingKey, now);
+            }
+        }
+    }
+}
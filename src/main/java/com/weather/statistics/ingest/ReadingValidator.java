@@ -0,0 +1,73 @@
+package com.weather.statistics.ingest;
+
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.metrics.WeatherMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Checks readings the same way whichever path they come in on, so write-behind never accepts
+ * something the synchronous path would refuse. Invalid requests throw {@link IllegalStateException}.
+ */
+@Component
+public class ReadingValidator {
+
+    private final WeatherMetrics weatherMetrics;
+    private final Duration maxLateness;
+    private final Duration maxClockSkew;
+
+    public ReadingValidator(WeatherMetrics weatherMetrics,
+                            @Value("${weather.ingest.max-lateness:PT24H}") Duration maxLateness,
+                            @Value("${weather.ingest.max-clock-skew:PT1M}") Duration maxClockSkew) {
+        this.weatherMetrics = weatherMetrics;
+        this.maxLateness = maxLateness;
+        this.maxClockSkew = maxClockSkew;
+    }
+
+    public void validateSensor(Long sensorId, String location) {
+        if (sensorId == null || sensorId <= 0) {
+            throw new IllegalStateException("Sensor ID must be a positive number");
+        }
+        if (location == null || location.isEmpty()) {
+            throw new IllegalStateException("Location cannot be null or empty");
+        }
+    }
+
+    public void validateReadings(List<MetricDto> metricList) {
+        for (MetricDto metricDto : metricList) {
+            if (!isValidReading(metricDto)) {
+                throw new IllegalStateException("Every reading needs a type and a value");
+            }
+        }
+    }
+
+    public boolean isValidReading(MetricDto metricDto) {
+        return metricDto != null && metricDto.getType() != null && !metricDto.getType().isBlank() && metricDto.getData() != null
+                && (metricDto.getReadingId() == null || metricDto.getReadingId().length() <= 64);
+    }
+
+    /**
+     * Readings keep the time the client recorded them at, so gateways can upload buffered
+     * readings. Readings older than the lateness window, or stamped ahead of the server clock by
+     * more than the allowed skew, are refused; readings without a time are stamped on arrival.
+     */
+    public void validateRecordedTimes(List<LocalDateTime> recordedTimes) {
+        LocalDateTime now = LocalDateTime.now();
+        for (LocalDateTime recordedTime : recordedTimes) {
+            if (!isWithinWindow(recordedTime, now)) {
+                weatherMetrics.lateReadingsRejected(1);
+                throw new IllegalStateException("Reading recorded at " + recordedTime
+                        + " is outside the accepted window of " + maxLateness + " before and " + maxClockSkew + " after " + now);
+            }
+        }
+    }
+
+    public boolean isWithinWindow(LocalDateTime recordedTime, LocalDateTime now) {
+        return recordedTime == null
+                || (!recordedTime.isBefore(now.minus(maxLateness)) && !recordedTime.isAfter(now.plus(maxClockSkew)));
+    }
+}
@@ -50,7 +50,7 @@ public class SensorDataMapper {
                         Metric metric = new Metric();
                         metric.setType(metricDto.getType());
                         metric.setData(metricDto.getData());
-                        metric.setRecordedTime(LocalDateTime.now());
+                        metric.setRecordedTime(metricDto.getRecordedTime() == null ? LocalDateTime.now() : metricDto.getRecordedTime());
                         metric.setSensor(sensor);
                         return metric;
                     })
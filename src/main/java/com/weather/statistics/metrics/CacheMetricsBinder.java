@@ -0,0 +1,92 @@
+package com.weather.statistics.metrics;
+
+import com.weather.statistics.cache.QueryResultCache;
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.dto.CacheStatsDto;
+import com.weather.statistics.dto.IngestStatsDto;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.IngestQueue;
+import com.weather.statistics.subscription.SubscriptionHub;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the stats behind {@code GET /weather/cache/stats}, {@code /weather/ingest/stats} and
+ * {@code /weather/subscribe/stats} as meters. Cache meters use the names Micrometer gives Caffeine caches ({@code cache.size},
+ * {@code cache.gets}, {@code cache.evictions}), so existing cache dashboards apply.
+ */
+@Component
+public class CacheMetricsBinder implements MeterBinder {
+
+    private final SensorRegistry sensorRegistry;
+    private final QueryResultCache queryResultCache;
+    private final HotStore hotStore;
+    private final IngestQueue ingestQueue;
+    private final SubscriptionHub subscriptionHub;
+
+    public CacheMetricsBinder(SensorRegistry sensorRegistry, QueryResultCache queryResultCache, HotStore hotStore,
+                              IngestQueue ingestQueue, SubscriptionHub subscriptionHub) {
+        this.sensorRegistry = sensorRegistry;
+        this.queryResultCache = queryResultCache;
+        this.hotStore = hotStore;
+        this.ingestQueue = ingestQueue;
+        this.subscriptionHub = subscriptionHub;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCache(registry, "sensors", sensorRegistry, SensorRegistry::stats);
+        bindCache(registry, "queryResults", queryResultCache, QueryResultCache::stats);
+        bindCache(registry, "hotStore", hotStore, HotStore::stats);
+        Gauge.builder("weather.hotstore.memory", hotStore, store -> store.stats().getMemoryBytes())
+                .description("Bytes held by the hot store's reading arrays")
+                .baseUnit("bytes")
+                .register(registry);
+
+        Gauge.builder("weather.ingest.queue.depth", ingestQueue, queue -> queue.stats().getDepth())
+                .description("Readings waiting in the write-behind queue")
+                .register(registry);
+        Gauge.builder("weather.ingest.queue.capacity", ingestQueue, queue -> queue.stats().getCapacity())
+                .register(registry);
+        ingestCounter(registry, "weather.ingest.queue.drained", IngestStatsDto::getDrained);
+        ingestCounter(registry, "weather.ingest.queue.rejected", IngestStatsDto::getRejected);
+        ingestCounter(registry, "weather.ingest.queue.failed", IngestStatsDto::getFailed);
+
+        Gauge.builder("weather.subscribe.subscribers", subscriptionHub, hub -> hub.stats().getSubscribers())
+                .description("Open live subscriptions")
+                .register(registry);
+        FunctionCounter.builder("weather.subscribe.events", subscriptionHub, hub -> hub.stats().getEventsSent())
+                .description("Live update events sent")
+                .register(registry);
+        FunctionCounter.builder("weather.subscribe.dropped", subscriptionHub, hub -> hub.stats().getDropped())
+                .description("Live subscribers dropped for falling behind")
+                .register(registry);
+    }
+
+    // Meters only hold their source weakly, so the source is the cache bean itself, not a lambda.
+    private <T> void bindCache(MeterRegistry registry, String name, T cache, Function<T, CacheStatsDto> stats) {
+        Gauge.builder("cache.size", cache, c -> stats.apply(c).getSize())
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("cache.gets", cache, c -> stats.apply(c).getHitCount())
+                .tags("cache", name, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", cache, c -> stats.apply(c).getMissCount())
+                .tags("cache", name, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", cache, c -> stats.apply(c).getEvictionCount())
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    private void ingestCounter(MeterRegistry registry, String name, ToDoubleFunction<IngestStatsDto> value) {
+        FunctionCounter.builder(name, ingestQueue, queue -> value.applyAsDouble(queue.stats()))
+                .register(registry);
+    }
+}
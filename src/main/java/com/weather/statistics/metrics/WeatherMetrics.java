@@ -0,0 +1,133 @@
+package com.weather.statistics.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms and counters for the ingestion and query pipelines. Phases are timed
+ * separately from the whole request, so a slow request can be traced to the phase it spent
+ * its time in. Queries slower than {@code weather.metrics.slow-query.threshold} are logged
+ * with their parameters, sampled by {@code weather.metrics.slow-query.sample-rate}.
+ */
+@Component
+public class WeatherMetrics {
+
+    public static final String SENSOR_LOOKUP = "sensor_lookup";
+    public static final String DEDUP = "dedup";
+    public static final String INSERT = "insert";
+    public static final String FETCH = "fetch";
+    public static final String AGGREGATION = "aggregation";
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherMetrics.class);
+    private static final int LOGGED_SENSOR_IDS = 20;
+
+    private final MeterRegistry registry;
+    private final Timer ingestRequests;
+    private final Timer queryRequests;
+    private final Map<String, Timer> ingestPhases = new ConcurrentHashMap<>();
+    private final Map<String, Timer> queryPhases = new ConcurrentHashMap<>();
+    private final Counter readingsAccepted;
+    private final Counter duplicatesSkipped;
+    private final Counter lateReadingsRejected;
+    private final Counter locationConflicts;
+    private final boolean slowQueryLog;
+    private final long slowQueryNanos;
+    private final double slowQuerySampleRate;
+
+    public WeatherMetrics(MeterRegistry registry,
+                          @Value("${weather.metrics.slow-query.enabled:false}") boolean slowQueryLog,
+                          @Value("${weather.metrics.slow-query.threshold:PT1S}") Duration slowQueryThreshold,
+                          @Value("${weather.metrics.slow-query.sample-rate:1.0}") double slowQuerySampleRate) {
+        this.registry = registry;
+        this.ingestRequests = timer("weather.ingest.requests", "Time to store one /weather/create request").register(registry);
+        this.queryRequests = timer("weather.query.requests", "Time to answer one /weather/metrics query, cache hits included")
+                .register(registry);
+        this.readingsAccepted = Counter.builder("weather.readings.accepted")
+                .description("Readings stored")
+                .register(registry);
+        this.duplicatesSkipped = Counter.builder("weather.readings.duplicates")
+                .description("Readings skipped because their reading key was already stored")
+                .register(registry);
+        this.lateReadingsRejected = Counter.builder("weather.readings.late")
+                .description("Readings rejected because they were recorded outside the accepted lateness window")
+                .register(registry);
+        this.locationConflicts = Counter.builder("weather.sensor.location.conflicts")
+                .description("Requests rejected because the sensor is registered at another location")
+                .register(registry);
+        this.slowQueryLog = slowQueryLog;
+        this.slowQueryNanos = slowQueryThreshold.toNanos();
+        this.slowQuerySampleRate = slowQuerySampleRate;
+    }
+
+    /**
+     * Records an ingestion phase that started at {@code startNanos} ({@link System#nanoTime()}).
+     */
+    public void recordIngestPhase(String phase, long startNanos) {
+        ingestPhases.computeIfAbsent(phase, p -> timer("weather.ingest.phase", "Time spent in one phase of storing a request")
+                        .tag("phase", p)
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordIngest(long startNanos) {
+        ingestRequests.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a query phase; {@code source} tells which store answered the fetch.
+     */
+    public void recordQueryPhase(String phase, String source, long startNanos) {
+        queryPhases.computeIfAbsent(phase + "/" + source, key -> timer("weather.query.phase", "Time spent in one phase of a query")
+                        .tag("phase", phase)
+                        .tag("source", source)
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordQuery(long startNanos, List<Long> sensorIds, List<String> metrics, String statistic,
+                            LocalDateTime startDate, LocalDateTime endDate) {
+        long nanos = System.nanoTime() - startNanos;
+        queryRequests.record(nanos, TimeUnit.NANOSECONDS);
+        if (slowQueryLog && nanos >= slowQueryNanos && ThreadLocalRandom.current().nextDouble() < slowQuerySampleRate) {
+            log.warn("Slow query took {} ms: {} sensorIds={} metrics={} statistic={} startDate={} endDate={}",
+                    TimeUnit.NANOSECONDS.toMillis(nanos), sensorIds.size(),
+                    sensorIds.size() <= LOGGED_SENSOR_IDS ? sensorIds : sensorIds.subList(0, LOGGED_SENSOR_IDS) + "...",
+                    metrics, statistic, startDate, endDate);
+        }
+    }
+
+    public void readingsAccepted(int count) {
+        readingsAccepted.increment(count);
+    }
+
+    public void duplicatesSkipped(int count) {
+        duplicatesSkipped.increment(count);
+    }
+
+    public void lateReadingsRejected(int count) {
+        lateReadingsRejected.increment(count);
+    }
+
+    public void locationConflict() {
+        locationConflicts.increment();
+    }
+
+    private static Timer.Builder timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram();
+    }
+}
@@ -0,0 +1,96 @@
+package com.weather.statistics.query;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weather.statistics.storage.ReadingStore;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes raw readings straight from the storage cursor to the response stream, one line per
+ * reading, ordered by sensor and time.
+ */
+@Component
+public class MetricExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadingStore readingStore;
+    private final ObjectMapper objectMapper;
+
+    public MetricExporter(ReadingStore readingStore, ObjectMapper objectMapper) {
+        this.readingStore = readingStore;
+        this.objectMapper = objectMapper;
+    }
+
+    public void export(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                       ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            if (format == ExportFormat.CSV) {
+                writeCsv(sensorIds, metrics, startDate, endDate, writer);
+            } else {
+                writeNdjson(sensorIds, metrics, startDate, endDate, writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void writeNdjson(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                             Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        readingStore.forEachReadingInOrder(sensorIds, metrics, startDate, endDate, reading -> {
+            try {
+                objectMapper.writeValue(generator, reading);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.flush();
+    }
+
+    private void writeCsv(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                          Writer writer) throws IOException {
+        writer.write("sensorId,type,data,recordedTime\n");
+        readingStore.forEachReadingInOrder(sensorIds, metrics, startDate, endDate, reading -> {
+            try {
+                writer.write(csvField(reading.getSensorId()));
+                writer.write(',');
+                writer.write(csvField(reading.getType()));
+                writer.write(',');
+                writer.write(csvField(reading.getData()));
+                writer.write(',');
+                writer.write(reading.getRecordedTime() == null ? "" : DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(reading.getRecordedTime()));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static String csvField(Object field) {
+        if (field == null) {
+            return "";
+        }
+        String value = field.toString();
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,79 @@
+package com.weather.statistics.query;
+
+import com.weather.statistics.aggregation.MetricAggregator;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Parallel mode for queries over many sensors: the sensor IDs are split into shards that are
+ * fetched and aggregated concurrently on a dedicated, bounded fork-join pool, and the partial
+ * aggregates are merged. Shards hold disjoint sensors, so every group comes from one shard.
+ * Queries below the threshold, or with the mode off, run on the calling thread.
+ */
+@Component
+public class ShardedQueryExecutor {
+
+    private final boolean enabled;
+    private final int minSensors;
+    private final int shardSize;
+    private final ForkJoinPool pool;
+
+    public ShardedQueryExecutor(@Value("${weather.query.parallel.enabled:false}") boolean enabled,
+                                @Value("${weather.query.parallel.threads:0}") int threads,
+                                @Value("${weather.query.parallel.min-sensors:64}") int minSensors,
+                                @Value("${weather.query.parallel.shard-size:32}") int shardSize) {
+        this.enabled = enabled;
+        this.minSensors = minSensors;
+        this.shardSize = Math.max(1, shardSize);
+        this.pool = enabled ? new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors()) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Aggregates {@code sensorIds} with {@code fetch}, called once per shard of sensor IDs.
+     */
+    public MetricAggregator aggregate(List<Long> sensorIds, Function<List<Long>, MetricAggregator> fetch) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(sensorIds));
+        if (!enabled || distinct.size() < minSensors || distinct.size() <= shardSize) {
+            return fetch.apply(sensorIds);
+        }
+
+        List<CompletableFuture<MetricAggregator>> shards = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += shardSize) {
+            List<Long> shard = distinct.subList(from, Math.min(from + shardSize, distinct.size()));
+            shards.add(CompletableFuture.supplyAsync(() -> fetch.apply(shard), pool));
+        }
+
+        MetricAggregator merged = null;
+        for (CompletableFuture<MetricAggregator> shard : shards) {
+            MetricAggregator partial;
+            try {
+                partial = shard.join();
+            } catch (CompletionException e) {
+                shards.forEach(pending -> pending.cancel(false));
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            if (merged == null) {
+                merged = partial;
+            } else {
+                merged.merge(partial);
+            }
+        }
+        return merged;
+    }
+}
@@ -1,20 +1,67 @@
 package com.weather.statistics.repository;
 
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricReadingDto;
 import com.weather.statistics.entity.Metric;
-import com.weather.statistics.entity.Sensor;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MetricRepository extends JpaRepository<Metric, Long> {
 
-    Optional<Metric> findBySensorAndTypeAndData(Sensor sensor, String type, Double data);
+    @Query("SELECT m.readingKey FROM Metric m WHERE m.readingKey IN :readingKeys")
+    List<String> findExistingReadingKeys(@Param("readingKeys") Collection<String> readingKeys);
 
-    List<Metric> findBySensor_SensorIdInAndTypeInAndRecordedTimeBetween(
-            List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.weather.statistics.dto.MetricReadingDto(m.sensor.sensorId, m.type, m.data, m.recordedTime) " +
+            "FROM Metric m WHERE m.sensor.sensorId IN :sensorIds AND m.type IN :metrics " +
+            "AND m.recordedTime BETWEEN :startDate AND :endDate")
+    Stream<MetricReadingDto> streamReadings(@Param("sensorIds") List<Long> sensorIds, @Param("metrics") List<String> metrics,
+                                            @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.weather.statistics.dto.MetricReadingDto(m.sensor.sensorId, m.type, m.data, m.recordedTime) " +
+            "FROM Metric m WHERE m.sensor.sensorId IN :sensorIds AND m.type IN :metrics " +
+            "AND m.recordedTime >= :from AND m.recordedTime < :to")
+    Stream<MetricReadingDto> streamReadingsHalfOpen(@Param("sensorIds") List<Long> sensorIds, @Param("metrics") List<String> metrics,
+                                                    @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.weather.statistics.dto.MetricReadingDto(m.sensor.sensorId, m.type, m.data, m.recordedTime) " +
+            "FROM Metric m WHERE m.recordedTime >= :from ORDER BY m.recordedTime")
+    Stream<MetricReadingDto> streamReadingsSince(@Param("from") LocalDateTime from);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.weather.statistics.dto.MetricReadingDto(m.sensor.sensorId, m.type, m.data, m.recordedTime) " +
+            "FROM Metric m WHERE m.sensor.sensorId IN :sensorIds AND m.type IN :metrics " +
+            "AND m.recordedTime BETWEEN :startDate AND :endDate ORDER BY m.sensor.sensorId, m.recordedTime, m.id")
+    Stream<MetricReadingDto> streamReadingsInOrder(@Param("sensorIds") List<Long> sensorIds, @Param("metrics") List<String> metrics,
+                                                   @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @Query("SELECT new com.weather.statistics.dto.MetricAggregateDto(m.sensor.sensorId, m.type, COUNT(m), SUM(m.data), MIN(m.data), MAX(m.data), SUM(m.data * m.data)) " +
+            "FROM Metric m WHERE m.sensor.sensorId IN :sensorIds AND m.type IN :metrics " +
+            "AND m.recordedTime BETWEEN :startDate AND :endDate GROUP BY m.sensor.sensorId, m.type")
+    List<MetricAggregateDto> aggregateBySensorAndType(@Param("sensorIds") List<Long> sensorIds, @Param("metrics") List<String> metrics,
+                                                      @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @Query("SELECT new com.weather.statistics.dto.MetricAggregateDto(m.sensor.sensorId, m.type, COUNT(m), SUM(m.data), MIN(m.data), MAX(m.data), SUM(m.data * m.data)) " +
+            "FROM Metric m WHERE m.sensor.sensorId IN :sensorIds AND m.type IN :metrics " +
+            "AND m.recordedTime >= :from AND m.recordedTime < :to GROUP BY m.sensor.sensorId, m.type")
+    List<MetricAggregateDto> aggregateBySensorAndTypeHalfOpen(@Param("sensorIds") List<Long> sensorIds, @Param("metrics") List<String> metrics,
+                                                            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 
 }
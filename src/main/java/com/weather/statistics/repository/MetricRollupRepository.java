@@ -0,0 +1,54 @@
+package com.weather.statistics.repository;
+
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.entity.MetricRollup;
+import com.weather.statistics.rollup.RollupGranularity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MetricRollupRepository extends JpaRepository<MetricRollup, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM MetricRollup r " +
+            "WHERE r.sensorId = :sensorId AND r.type = :type AND r.granularity = :granularity AND r.bucketStart = :bucketStart")
+    Optional<MetricRollup> findBucketForUpdate(@Param("sensorId") Long sensorId, @Param("type") String type,
+                                               @Param("granularity") RollupGranularity granularity,
+                                               @Param("bucketStart") LocalDateTime bucketStart);
+
+    /**
+     * Inserts an empty bucket unless it exists, in one statement on the caller's connection. A writer
+     * racing on the same bucket waits for the other's row instead of failing on the unique key; the
+     * other columns are filled from their defaults.
+     */
+    @Modifying
+    @Query(value = "MERGE INTO metric_rollup (sensor_id, type_id, granularity, bucket_start) " +
+            "KEY (sensor_id, type_id, granularity, bucket_start) VALUES (:sensorId, :typeId, :granularity, :bucketStart)",
+            nativeQuery = true)
+    void createBucketIfAbsent(@Param("sensorId") Long sensorId, @Param("typeId") int typeId,
+                              @Param("granularity") String granularity, @Param("bucketStart") LocalDateTime bucketStart);
+
+    // m2 + sum^2 / count is the bucket's sum of squares, so the total m2 can be recovered after summing.
+    @Query("SELECT new com.weather.statistics.dto.MetricAggregateDto(r.sensorId, r.type, SUM(r.readingCount), SUM(r.sumValue), " +
+            "MIN(r.minValue), MAX(r.maxValue), SUM(r.m2Value + r.sumValue * r.sumValue / r.readingCount)) " +
+            "FROM MetricRollup r WHERE r.sensorId IN :sensorIds AND r.type IN :metrics AND r.granularity = :granularity " +
+            "AND r.bucketStart >= :from AND r.bucketStart < :to GROUP BY r.sensorId, r.type")
+    List<MetricAggregateDto> aggregateBuckets(@Param("sensorIds") List<Long> sensorIds, @Param("metrics") List<String> metrics,
+                                              @Param("granularity") RollupGranularity granularity,
+                                              @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT r FROM MetricRollup r WHERE r.sensorId IN :sensorIds AND r.type IN :metrics AND r.granularity = :granularity " +
+            "AND r.bucketStart >= :from AND r.bucketStart < :to")
+    List<MetricRollup> findBuckets(@Param("sensorIds") List<Long> sensorIds, @Param("metrics") List<String> metrics,
+                                   @Param("granularity") RollupGranularity granularity,
+                                   @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,18 @@
+package com.weather.statistics.repository;
+
+import com.weather.statistics.entity.MetricType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MetricTypeRepository extends JpaRepository<MetricType, Integer> {
+
+    // Called from entity conversions, possibly while the session is flushing, so it must not flush.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    Optional<MetricType> findByName(String name);
+}
@@ -0,0 +1,382 @@
+package com.weather.statistics.rollup;
+
+import com.weather.statistics.aggregation.MetricAggregator;
+import com.weather.statistics.aggregation.SeriesAggregator;
+import com.weather.statistics.aggregation.StatisticAccumulator;
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.MetricRollup;
+import com.weather.statistics.ingest.MetricsWrittenEvent;
+import com.weather.statistics.repository.MetricRollupRepository;
+import com.weather.statistics.storage.ReadingStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Maintains per-(sensor, type, bucket) count/sum/min/max, m2 and a quantile sketch at minute,
+ * hour and day granularity and answers range aggregates from the coarsest buckets that fit
+ * inside the range, reading raw metrics only for the partial minutes at either edge.
+ * <p>
+ * Writes stay off the ingest path: committed readings are folded into in-memory deltas, one per
+ * bucket, and a flusher merges the deltas into {@code metric_rollup} every
+ * {@code weather.rollup.flush-interval}, so each bucket row is locked and rewritten at most once
+ * per interval however many requests touched it. Queries add the deltas not flushed yet. Deltas
+ * still in memory when the process dies are lost from the rollups; a graceful shutdown flushes them.
+ */
+@Service
+public class RollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(RollupService.class);
+
+    private static final RollupGranularity[] COARSEST_FIRST = {RollupGranularity.DAY, RollupGranularity.HOUR, RollupGranularity.MINUTE};
+    // Buckets are locked in this order so concurrent writers cannot deadlock on each other.
+    private static final Comparator<BucketKey> LOCK_ORDER = Comparator.comparing(BucketKey::sensorId)
+            .thenComparing(BucketKey::type)
+            .thenComparing(BucketKey::granularity)
+            .thenComparing(BucketKey::bucketStart);
+
+    private final MetricRollupRepository rollupRepository;
+    private final ReadingStore readingStore;
+    private final MetricTypeRegistry metricTypeRegistry;
+    private final PlatformTransactionManager transactionManager;
+    private final boolean enabled;
+    private final long flushIntervalMillis;
+    // Deltas of committed readings not yet written to metric_rollup, and those a flush is writing.
+    private final Object deltaLock = new Object();
+    private TreeMap<BucketKey, StatisticAccumulator> pending = new TreeMap<>(LOCK_ORDER);
+    private TreeMap<BucketKey, StatisticAccumulator> flushing = new TreeMap<>(LOCK_ORDER);
+    // Queries read rows and deltas under the read lock and a flush commits under the write lock,
+    // so a query never sees a delta both in its row and in memory.
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private ScheduledExecutorService flusher;
+
+    public RollupService(MetricRollupRepository rollupRepository, ReadingStore readingStore,
+                         MetricTypeRegistry metricTypeRegistry, PlatformTransactionManager transactionManager,
+                         @Value("${weather.rollup.enabled:true}") boolean enabled,
+                         @Value("${weather.rollup.flush-interval:PT1S}") Duration flushInterval) {
+        this.rollupRepository = rollupRepository;
+        this.readingStore = readingStore;
+        this.metricTypeRegistry = metricTypeRegistry;
+        this.transactionManager = transactionManager;
+        this.enabled = enabled;
+        this.flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rollup-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        flushSafely();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs before the other listeners of the event, in particular before the query result cache
+     * drops entries, so a query recomputed right after sees the new readings in the rollups.
+     */
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onMetricsWritten(MetricsWrittenEvent event) {
+        record(event.metrics());
+    }
+
+    /**
+     * Folds committed metrics into the pending deltas of their buckets.
+     */
+    public void record(List<Metric> metrics) {
+        if (!enabled || metrics.isEmpty()) {
+            return;
+        }
+        synchronized (deltaLock) {
+            for (Metric metric : metrics) {
+                for (RollupGranularity granularity : RollupGranularity.values()) {
+                    BucketKey key = new BucketKey(metric.getSensor().getSensorId(), metric.getType(), granularity,
+                            granularity.floor(metric.getRecordedTime()));
+                    pending.computeIfAbsent(key, k -> new StatisticAccumulator(true)).add(metric.getData());
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the pending deltas into their bucket rows in one transaction. Sketches cannot be
+     * merged in SQL, so buckets are read under a row lock, in a fixed order, merged and written
+     * back. A missing bucket is first inserted empty by an upsert on the same connection, so
+     * instances racing to create it all end up locking the same row. If the transaction fails,
+     * the deltas are kept for the next flush. Flushes run one at a time, so a caller returns
+     * only once the deltas recorded before the call are committed, even if the background
+     * flusher had already taken some of them.
+     */
+    public synchronized void flush() {
+        TreeMap<BucketKey, StatisticAccumulator> deltas;
+        synchronized (deltaLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            deltas = pending;
+            flushing = deltas;
+            pending = new TreeMap<>(LOCK_ORDER);
+        }
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            deltas.forEach(this::mergeIntoBucket);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            restore(deltas);
+            throw e;
+        }
+        flushLock.writeLock().lock();
+        try {
+            transactionManager.commit(status);
+            synchronized (deltaLock) {
+                flushing = new TreeMap<>(LOCK_ORDER);
+            }
+        } catch (RuntimeException e) {
+            restore(deltas);
+            throw e;
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Rollup flush failed, will retry", e);
+        }
+    }
+
+    private void restore(TreeMap<BucketKey, StatisticAccumulator> deltas) {
+        synchronized (deltaLock) {
+            deltas.forEach((key, delta) -> pending.computeIfAbsent(key, k -> new StatisticAccumulator(true)).merge(delta));
+            flushing = new TreeMap<>(LOCK_ORDER);
+        }
+    }
+
+    private void mergeIntoBucket(BucketKey key, StatisticAccumulator delta) {
+        Optional<MetricRollup> existing = rollupRepository.findBucketForUpdate(key.sensorId(), key.type(), key.granularity(), key.bucketStart());
+        if (existing.isEmpty()) {
+            rollupRepository.createBucketIfAbsent(key.sensorId(), metricTypeRegistry.idOf(key.type()),
+                    key.granularity().name(), key.bucketStart());
+            existing = rollupRepository.findBucketForUpdate(key.sensorId(), key.type(), key.granularity(), key.bucketStart());
+        }
+        MetricRollup rollup = existing.orElseThrow(() -> new IllegalStateException("Rollup bucket " + key + " was not created"));
+        StatisticAccumulator merged = toAccumulator(rollup);
+        merged.merge(delta);
+        apply(rollup, merged);
+    }
+
+    /**
+     * Aggregates readings recorded in [start, end], both ends inclusive like the raw query.
+     * With {@code withQuantiles} the bucket sketches are merged too, which means loading the
+     * bucket rows and streaming the raw edge readings instead of summing in SQL.
+     */
+    @Transactional(readOnly = true)
+    public MetricAggregator aggregate(List<Long> sensorIds, List<String> metrics, LocalDateTime start, LocalDateTime end,
+                                      boolean withQuantiles) {
+        MetricAggregator aggregator = new MetricAggregator(metricTypeRegistry, withQuantiles);
+        flushLock.readLock().lock();
+        try {
+            cover(aggregator, sensorIds, metrics, start, end, 0, withQuantiles);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        // Buckets and edges are half-open, so readings stamped exactly at the end are picked up separately.
+        if (withQuantiles) {
+            readingStore.forEachReading(sensorIds, metrics, end, end, reading -> add(aggregator, reading));
+        } else {
+            merge(aggregator, readingStore.aggregate(sensorIds, metrics, end, end));
+        }
+        return aggregator;
+    }
+
+    private void cover(MetricAggregator aggregator, List<Long> sensorIds, List<String> metrics,
+                       LocalDateTime from, LocalDateTime to, int level, boolean withQuantiles) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == COARSEST_FIRST.length) {
+            if (withQuantiles) {
+                readingStore.forEachReadingHalfOpen(sensorIds, metrics, from, to, reading -> add(aggregator, reading));
+            } else {
+                merge(aggregator, readingStore.aggregateHalfOpen(sensorIds, metrics, from, to));
+            }
+            return;
+        }
+
+        RollupGranularity granularity = COARSEST_FIRST[level];
+        LocalDateTime firstBucket = granularity.ceil(from);
+        LocalDateTime lastBucketEnd = granularity.floor(to);
+        if (!firstBucket.isBefore(lastBucketEnd)) {
+            cover(aggregator, sensorIds, metrics, from, to, level + 1, withQuantiles);
+            return;
+        }
+        if (withQuantiles) {
+            for (MetricRollup rollup : rollupRepository.findBuckets(sensorIds, metrics, granularity, firstBucket, lastBucketEnd)) {
+                aggregator.merge(rollup.getSensorId(), rollup.getType(), toAccumulator(rollup));
+            }
+        } else {
+            merge(aggregator, rollupRepository.aggregateBuckets(sensorIds, metrics, granularity, firstBucket, lastBucketEnd));
+        }
+        forEachDelta(sensorIds, metrics, granularity, firstBucket, lastBucketEnd, (key, delta) ->
+                aggregator.merge(key.sensorId(), key.type(), withQuantiles ? delta : moments(delta)));
+        cover(aggregator, sensorIds, metrics, from, firstBucket, level + 1, withQuantiles);
+        cover(aggregator, sensorIds, metrics, lastBucketEnd, to, level + 1, withQuantiles);
+    }
+
+    /**
+     * Time-bucketed variant of {@link #aggregate}. Only rollup granularities that divide the
+     * interval are used, so every rollup bucket falls inside a single series bucket.
+     */
+    @Transactional(readOnly = true)
+    public SeriesAggregator series(List<Long> sensorIds, List<String> metrics, LocalDateTime start, LocalDateTime end,
+                                   Duration interval, boolean withQuantiles) {
+        SeriesAggregator series = new SeriesAggregator(interval, withQuantiles);
+        flushLock.readLock().lock();
+        try {
+            coverSeries(series, sensorIds, metrics, start, end, 0, withQuantiles);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        readingStore.forEachReading(sensorIds, metrics, end, end, reading -> add(series, reading));
+        return series;
+    }
+
+    private void coverSeries(SeriesAggregator series, List<Long> sensorIds, List<String> metrics,
+                             LocalDateTime from, LocalDateTime to, int level, boolean withQuantiles) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == COARSEST_FIRST.length) {
+            readingStore.forEachReadingHalfOpen(sensorIds, metrics, from, to, reading -> add(series, reading));
+            return;
+        }
+
+        RollupGranularity granularity = COARSEST_FIRST[level];
+        LocalDateTime firstBucket = granularity.ceil(from);
+        LocalDateTime lastBucketEnd = granularity.floor(to);
+        if (!series.isAlignedWith(granularity.getDuration()) || !firstBucket.isBefore(lastBucketEnd)) {
+            coverSeries(series, sensorIds, metrics, from, to, level + 1, withQuantiles);
+            return;
+        }
+        for (MetricRollup rollup : rollupRepository.findBuckets(sensorIds, metrics, granularity, firstBucket, lastBucketEnd)) {
+            series.accumulator(rollup.getSensorId(), rollup.getType(), rollup.getBucketStart())
+                    .merge(withQuantiles ? toAccumulator(rollup) : toMoments(rollup));
+        }
+        forEachDelta(sensorIds, metrics, granularity, firstBucket, lastBucketEnd, (key, delta) ->
+                series.accumulator(key.sensorId(), key.type(), key.bucketStart()).merge(withQuantiles ? delta : moments(delta)));
+        coverSeries(series, sensorIds, metrics, from, firstBucket, level + 1, withQuantiles);
+        coverSeries(series, sensorIds, metrics, lastBucketEnd, to, level + 1, withQuantiles);
+    }
+
+    /**
+     * Visits the unflushed deltas of the given buckets, pending ones and those being flushed.
+     */
+    private void forEachDelta(List<Long> sensorIds, List<String> metrics, RollupGranularity granularity,
+                              LocalDateTime from, LocalDateTime to, BiConsumer<BucketKey, StatisticAccumulator> action) {
+        synchronized (deltaLock) {
+            if (pending.isEmpty() && flushing.isEmpty()) {
+                return;
+            }
+            for (Long sensorId : sensorIds) {
+                for (String metric : metrics) {
+                    BucketKey first = new BucketKey(sensorId, metric, granularity, from);
+                    BucketKey last = new BucketKey(sensorId, metric, granularity, to);
+                    flushing.subMap(first, true, last, false).forEach(action);
+                    pending.subMap(first, true, last, false).forEach(action);
+                }
+            }
+        }
+    }
+
+    private void merge(MetricAggregator aggregator, List<MetricAggregateDto> aggregates) {
+        for (MetricAggregateDto aggregate : aggregates) {
+            aggregator.merge(aggregate.getSensorId(), aggregate.getType(),
+                    StatisticAccumulator.of(aggregate.getCount(), aggregate.getSum(), aggregate.getMin(), aggregate.getMax(),
+                            aggregate.getSumOfSquares()));
+        }
+    }
+
+    private void add(MetricAggregator aggregator, MetricReadingDto reading) {
+        aggregator.add(reading.getSensorId(), reading.getType(), reading.getData());
+    }
+
+    private void add(SeriesAggregator series, MetricReadingDto reading) {
+        series.add(reading.getSensorId(), reading.getType(), reading.getRecordedTime(), reading.getData());
+    }
+
+    private static StatisticAccumulator toMoments(MetricRollup rollup) {
+        return StatisticAccumulator.of(rollup.getReadingCount(), rollup.getSumValue(), rollup.getMinValue(), rollup.getMaxValue(),
+                rollup.getM2Value(), null);
+    }
+
+    private static StatisticAccumulator moments(StatisticAccumulator delta) {
+        return StatisticAccumulator.of(delta.getCount(), delta.getSum(), delta.getMin(), delta.getMax(), delta.getM2(), null);
+    }
+
+    private static StatisticAccumulator toAccumulator(MetricRollup rollup) {
+        if (rollup.getReadingCount() == 0) {
+            return new StatisticAccumulator(true);
+        }
+        return StatisticAccumulator.of(rollup.getReadingCount(), rollup.getSumValue(), rollup.getMinValue(), rollup.getMaxValue(),
+                rollup.getM2Value(), rollup.getSketch());
+    }
+
+    private static void apply(MetricRollup rollup, StatisticAccumulator accumulator) {
+        rollup.setReadingCount(accumulator.getCount());
+        rollup.setSumValue(accumulator.getSum());
+        rollup.setMinValue(accumulator.getMin());
+        rollup.setMaxValue(accumulator.getMax());
+        rollup.setM2Value(accumulator.getM2());
+        rollup.setSketch(accumulator.encodeSketch());
+    }
+
+    private record BucketKey(Long sensorId, String type, RollupGranularity granularity, LocalDateTime bucketStart) {
+    }
+}
@@ -1,19 +1,30 @@
 package com.weather.statistics.service;
 
+import com.weather.statistics.dto.BatchRequestDto;
+import com.weather.statistics.dto.BulkSensorRequestDto;
 import com.weather.statistics.dto.RequestDto;
 import com.weather.statistics.dto.ResponseDto;
 import com.weather.statistics.dto.SensorStatsDto;
+import com.weather.statistics.dto.SeriesPointDto;
 import com.weather.statistics.entity.Sensor;
 import com.weather.statistics.exception.InvalidDateRangeException;
 import com.weather.statistics.exception.InvalidSensorException;
 import com.weather.statistics.exception.InvalidStatisticException;
+import com.weather.statistics.ingest.ReadingBatch;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 public interface WeatherService {
     ResponseDto sensorData(RequestDto requestDto);
+    ResponseDto sensorData(ReadingBatch readings);
+    ResponseDto batchSensorData(BatchRequestDto batchRequestDto);
+    ResponseDto registerSensors(BulkSensorRequestDto bulkSensorRequestDto);
     Map<Long, Map<String, Double>> querySensorData(List<Long> sensorIds, List<String> metrics, String statistic,
                                                    LocalDateTime startDate, LocalDateTime endDate) throws InvalidSensorException, InvalidStatisticException, InvalidDateRangeException;
+    Map<Long, Map<String, List<SeriesPointDto>>> querySensorSeries(List<Long> sensorIds, List<String> metrics, String statistic,
+                                                                 LocalDateTime startDate, LocalDateTime endDate,
+                                                                 Duration interval, Integer maxPoints);
 }
@@ -1,134 +1,580 @@
 package com.weather.statistics.service;
 
+import com.weather.statistics.aggregation.LargestTriangleThreeBuckets;
+import com.weather.statistics.aggregation.MetricAggregator;
+import com.weather.statistics.aggregation.SeriesAggregator;
+import com.weather.statistics.aggregation.StatisticAccumulator;
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.cache.QueryKey;
+import com.weather.statistics.cache.QueryResultCache;
+import com.weather.statistics.cache.SensorInfo;
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.dto.BatchRequestDto;
+import com.weather.statistics.dto.BulkSensorRequestDto;
+import com.weather.statistics.dto.MetricAggregateDto;
 import com.weather.statistics.dto.MetricDto;
 import com.weather.statistics.dto.RequestDto;
 import com.weather.statistics.dto.ResponseDto;
+import com.weather.statistics.dto.SensorBatchResultDto;
+import com.weather.statistics.dto.SensorDto;
+import com.weather.statistics.dto.SensorRegistrationResultDto;
+import com.weather.statistics.dto.SeriesPointDto;
 import com.weather.statistics.entity.Metric;
 import com.weather.statistics.entity.Sensor;
 import com.weather.statistics.exception.*;
-import com.weather.statistics.mapper.SensorDataMapper;
-import com.weather.statistics.repository.MetricRepository;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.MetricWriter;
+import com.weather.statistics.ingest.ReadingBatch;
+import com.weather.statistics.ingest.ReadingKeyFilter;
+import com.weather.statistics.ingest.ReadingValidator;
+import com.weather.statistics.metrics.WeatherMetrics;
+import com.weather.statistics.query.ShardedQueryExecutor;
 import com.weather.statistics.repository.SensorRepository;
+import com.weather.statistics.rollup.RollupService;
+import com.weather.statistics.storage.ReadingStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class WeatherServiceImpl implements WeatherService{
 
+    private static final Set<String> DATABASE_STATISTICS = Set.of("sum", "max", "min", "average", "count", "stddev");
+    private static final Pattern PERCENTILE = Pattern.compile("p(100|\\d{1,2}(\\.\\d+)?)");
+    // New sensors are saved in transactions of this many rows, each flushed in JDBC batches.
+    private static final int REGISTRATION_CHUNK_SIZE = 1000;
+
     private SensorRepository sensorRepository;
-    private MetricRepository metricRepository;
+    private ReadingStore readingStore;
+    private ReadingKeyFilter readingKeyFilter;
+    private SensorRegistry sensorRegistry;
+    private MetricWriter metricWriter;
+    private RollupService rollupService;
+    private QueryResultCache queryResultCache;
+    private HotStore hotStore;
+    private WeatherMetrics weatherMetrics;
+    private ShardedQueryExecutor shardedQueryExecutor;
+    private ReadingValidator readingValidator;
+    private MetricTypeRegistry metricTypeRegistry;
+    private int maxSeriesBuckets;
 
     @Autowired
-    public WeatherServiceImpl(SensorRepository sensorRepository, MetricRepository metricRepository) {
+    public WeatherServiceImpl(SensorRepository sensorRepository, ReadingStore readingStore,
+                              ReadingKeyFilter readingKeyFilter, SensorRegistry sensorRegistry,
+                              MetricWriter metricWriter, RollupService rollupService,
+                              QueryResultCache queryResultCache, HotStore hotStore, WeatherMetrics weatherMetrics,
+                              ShardedQueryExecutor shardedQueryExecutor, ReadingValidator readingValidator,
+                              MetricTypeRegistry metricTypeRegistry,
+                              @Value("${weather.query.series.max-buckets:10000}") int maxSeriesBuckets) {
         this.sensorRepository = sensorRepository;
-        this.metricRepository = metricRepository;
+        this.readingStore = readingStore;
+        this.readingKeyFilter = readingKeyFilter;
+        this.sensorRegistry = sensorRegistry;
+        this.metricWriter = metricWriter;
+        this.rollupService = rollupService;
+        this.queryResultCache = queryResultCache;
+        this.hotStore = hotStore;
+        this.weatherMetrics = weatherMetrics;
+        this.shardedQueryExecutor = shardedQueryExecutor;
+        this.readingValidator = readingValidator;
+        this.metricTypeRegistry = metricTypeRegistry;
+        this.maxSeriesBuckets = maxSeriesBuckets;
     }
 
     @Override
     public ResponseDto sensorData(RequestDto requestDto) {
 
-        if (requestDto.getSensorId() == null || requestDto.getSensorId() <= 0) {
-            throw new IllegalStateException("Sensor ID must be a positive number");
+        validateSensorRequest(requestDto);
+        readingValidator.validateReadings(requestDto.getMetricList());
+        readingValidator.validateRecordedTimes(requestDto.getMetricList().stream().map(MetricDto::getRecordedTime).toList());
+        return storeSensorData(requestDto.getSensorId(), requestDto.getLocation(),
+                sensor -> saveMetrics(sensor, requestDto.getMetricList()));
+    }
+
+    @Override
+    public ResponseDto sensorData(ReadingBatch readings) {
+
+        readingValidator.validateSensor(readings.getSensorId(), readings.getLocation());
+        readingValidator.validateRecordedTimes(IntStream.range(0, readings.size()).mapToObj(readings::getRecordedTime).toList());
+        return storeSensorData(readings.getSensorId(), readings.getLocation(), sensor -> saveReadings(sensor, readings));
+    }
+
+    private ResponseDto storeSensorData(Long sensorId, String location, Function<Sensor, List<Metric>> save) {
+        long started = System.nanoTime();
+        Optional<SensorInfo> existingSensor = sensorRegistry.find(sensorId);
+        if (existingSensor.isPresent()) {
+            Sensor sensor = existingSensor.get().toSensor();
+            checkLocation(sensor, location);
+            weatherMetrics.recordIngestPhase(WeatherMetrics.SENSOR_LOOKUP, started);
+
+            sensor.setMetricList(save.apply(sensor));
+            weatherMetrics.recordIngest(started);
+            return new ResponseDto("200", "Sensor already exists, metrics updated", sensor);
         }
-        if (requestDto.getLocation() == null || requestDto.getLocation().isEmpty()) {
-            throw new IllegalStateException("Location cannot be null or empty");
+
+        Sensor savedSensor = createSensor(sensorId, location);
+        weatherMetrics.recordIngestPhase(WeatherMetrics.SENSOR_LOOKUP, started);
+        savedSensor.setMetricList(save.apply(savedSensor));
+        weatherMetrics.recordIngest(started);
+        return new ResponseDto("201", "Sensor created successfully", savedSensor);
+    }
+
+    @Override
+    public ResponseDto batchSensorData(BatchRequestDto batchRequestDto) {
+        Map<Long, SensorBatchResultDto> results = new LinkedHashMap<>();
+        Map<Long, Integer> pendingPerSensor = new HashMap<>();
+        Set<String> batchKeys = new HashSet<>();
+        List<Metric> pending = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (RequestDto requestDto : batchRequestDto.getSensorList()) {
+            SensorBatchResultDto result = results.computeIfAbsent(requestDto.getSensorId(),
+                    sensorId -> new SensorBatchResultDto(sensorId, 0, 0, null));
+            List<MetricDto> metricList = requestDto.getMetricList() == null ? List.of() : requestDto.getMetricList();
+
+            Sensor sensor;
+            try {
+                validateSensorRequest(requestDto);
+                sensor = findOrCreateSensor(requestDto);
+            } catch (IllegalStateException | SensorLocationConflictException e) {
+                result.setRejected(result.getRejected() + metricList.size());
+                result.setMessage(e.getMessage());
+                continue;
+            }
+
+            for (MetricDto metricDto : metricList) {
+                if (!readingValidator.isValidReading(metricDto)) {
+                    result.setRejected(result.getRejected() + 1);
+                    continue;
+                }
+                if (!readingValidator.isWithinWindow(metricDto.getRecordedTime(), now)) {
+                    result.setRejected(result.getRejected() + 1);
+                    result.setMessage("Readings recorded outside the accepted time window were rejected");
+                    weatherMetrics.lateReadingsRejected(1);
+                    continue;
+                }
+                String readingKey = readingKey(sensor.getSensorId(), metricDto);
+                if (isDuplicate(sensor.getSensorId(), readingKey, batchKeys)) {
+                    result.setRejected(result.getRejected() + 1);
+                    weatherMetrics.duplicatesSkipped(1);
+                    continue;
+                }
+                pending.add(toMetric(sensor, metricDto, readingKey));
+                pendingPerSensor.merge(sensor.getSensorId(), 1, Integer::sum);
+            }
         }
 
-        Optional<Sensor> existingSensor = sensorRepository.findBySensorId(requestDto.getSensorId());
-        if (existingSensor.isPresent()) {
-            Sensor sensor = existingSensor.get();
+        for (Metric metric : insertMetrics(pending)) {
+            SensorBatchResultDto result = results.get(metric.getSensor().getSensorId());
+            result.setAccepted(result.getAccepted() + 1);
+        }
+        pendingPerSensor.forEach((sensorId, count) -> {
+            SensorBatchResultDto result = results.get(sensorId);
+            result.setRejected(result.getRejected() + count - result.getAccepted());
+        });
+        return new ResponseDto("200", "Batch processed", new ArrayList<>(results.values()));
+    }
 
-            if (!sensor.getLocation().equals(requestDto.getLocation())) {
-                throw new SensorLocationConflictException("Sensor " + requestDto.getSensorId() +
-                        " is already assigned to " + sensor.getLocation() + ", cannot change to " + requestDto.getLocation());
+    @Override
+    public ResponseDto registerSensors(BulkSensorRequestDto bulkSensorRequestDto) {
+        if (bulkSensorRequestDto.getSensorList().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalStateException("Sensor list cannot contain null entries");
+        }
+        // Invalid entries are reported one by one and do not affect valid entries for the same ID.
+        List<SensorRegistrationResultDto> invalid = new ArrayList<>();
+        Map<Long, SensorRegistrationResultDto> results = new LinkedHashMap<>();
+        Map<Long, SensorDto> requested = new LinkedHashMap<>();
+        for (SensorDto sensorDto : bulkSensorRequestDto.getSensorList()) {
+            try {
+                readingValidator.validateSensor(sensorDto.getSensorId(), sensorDto.getLocation());
+            } catch (IllegalStateException e) {
+                invalid.add(new SensorRegistrationResultDto(sensorDto.getSensorId(), SensorRegistrationResultDto.INVALID, e.getMessage()));
+                continue;
+            }
+            SensorDto first = requested.putIfAbsent(sensorDto.getSensorId(), sensorDto);
+            if (first != null && !first.getLocation().equals(sensorDto.getLocation())) {
+                results.put(sensorDto.getSensorId(), new SensorRegistrationResultDto(sensorDto.getSensorId(),
+                        SensorRegistrationResultDto.CONFLICT, "Sensor " + sensorDto.getSensorId() + " is listed with both "
+                        + first.getLocation() + " and " + sensorDto.getLocation()));
             }
+        }
+        requested.keySet().removeIf(sensorId -> results.containsKey(sensorId));
 
-            saveMetrics(sensor, requestDto.getMetricList());
-            return new ResponseDto("200", "Sensor already exists, metrics updated", sensor);
+        Map<Long, SensorInfo> existing = sensorRegistry.findAll(requested.keySet());
+        List<Sensor> pending = new ArrayList<>();
+        for (SensorDto sensorDto : requested.values()) {
+            SensorInfo sensor = existing.get(sensorDto.getSensorId());
+            if (sensor == null) {
+                pending.add(new Sensor(null, sensorDto.getSensorId(), sensorDto.getLocation(), new ArrayList<>(), LocalDateTime.now()));
+                continue;
+            }
+            results.put(sensorDto.getSensorId(), registrationResult(sensorDto, sensor.toSensor(), SensorRegistrationResultDto.EXISTING));
         }
 
-        Sensor sensor = SensorDataMapper.sensorDtoToSensor(requestDto);
-        Sensor savedSensor = sensorRepository.save(sensor);
+        for (int from = 0; from < pending.size(); from += REGISTRATION_CHUNK_SIZE) {
+            List<Sensor> chunk = pending.subList(from, Math.min(from + REGISTRATION_CHUNK_SIZE, pending.size()));
+            try {
+                for (Sensor saved : sensorRepository.saveAll(chunk)) {
+                    sensorRegistry.register(saved);
+                    results.put(saved.getSensorId(), new SensorRegistrationResultDto(saved.getSensorId(),
+                            SensorRegistrationResultDto.CREATED, null));
+                }
+            } catch (DataIntegrityViolationException e) {
+                // Some were registered concurrently; the chunk was rolled back, so register it one by one.
+                for (Sensor sensor : chunk) {
+                    SensorDto sensorDto = requested.get(sensor.getSensorId());
+                    Optional<SensorInfo> registered = sensorRegistry.find(sensor.getSensorId());
+                    results.put(sensor.getSensorId(), registered.isPresent()
+                            ? registrationResult(sensorDto, registered.get().toSensor(), SensorRegistrationResultDto.EXISTING)
+                            : registrationResult(sensorDto, null, SensorRegistrationResultDto.CREATED));
+                }
+            }
+        }
+        List<SensorRegistrationResultDto> registered = new ArrayList<>(invalid);
+        registered.addAll(results.values());
+        return new ResponseDto("200", "Sensors registered", registered);
+    }
 
-        saveMetrics(savedSensor, requestDto.getMetricList());
-        return new ResponseDto("201", "Sensor created successfully", savedSensor);
+    /**
+     * Result for a sensor that is already registered, or, without {@code sensor}, registers it.
+     */
+    private SensorRegistrationResultDto registrationResult(SensorDto sensorDto, Sensor sensor, String status) {
+        try {
+            if (sensor == null) {
+                createSensor(sensorDto.getSensorId(), sensorDto.getLocation());
+            } else {
+                checkLocation(sensor, sensorDto.getLocation());
+            }
+            return new SensorRegistrationResultDto(sensorDto.getSensorId(), status, null);
+        } catch (SensorLocationConflictException e) {
+            return new SensorRegistrationResultDto(sensorDto.getSensorId(), SensorRegistrationResultDto.CONFLICT, e.getMessage());
+        }
     }
 
     @Override
     public Map<Long, Map<String, Double>> querySensorData(List<Long> sensorIds, List<String> metrics, String statistic, LocalDateTime startDate, LocalDateTime endDate) throws InvalidSensorException, InvalidStatisticException {
+        long started = System.nanoTime();
+        try {
+            if (!queryResultCache.isEnabled()) {
+                return computeSensorData(sensorIds, metrics, statistic, startDate, endDate);
+            }
+            QueryKey key = queryResultCache.key(sensorIds, metrics, statistic, startDate, endDate);
+            return queryResultCache.get(key, () -> computeSensorData(
+                    key.sensorIds(), key.metrics(), key.statistic(), key.startDate(), key.endDate()));
+        } finally {
+            weatherMetrics.recordQuery(started, sensorIds, metrics, statistic, startDate, endDate);
+        }
+    }
 
-        List<Sensor> sensors = sensorRepository.findSensorsBySensorIds(sensorIds);
+    private Map<Long, Map<String, Double>> computeSensorData(List<Long> sensorIds, List<String> metrics, String statistic, LocalDateTime startDate, LocalDateTime endDate) {
 
-        if (sensors.isEmpty()) {
-            throw new SensorNotFoundException("No sensors found for the provided sensor IDs: " + sensorIds);
+        long started = System.nanoTime();
+        boolean percentile = validateQuery(sensorIds, statistic);
+        weatherMetrics.recordQueryPhase(WeatherMetrics.SENSOR_LOOKUP, "registry", started);
+
+        started = System.nanoTime();
+        String source;
+        if (hotStore.covers(startDate)) {
+            source = "hotstore";
+        } else if (rollupService.isEnabled()) {
+            source = "rollup";
+        } else if (percentile) {
+            source = "stream";
+        } else {
+            source = "database";
         }
+        MetricAggregator aggregator = shardedQueryExecutor.aggregate(sensorIds,
+                shard -> fetch(source, shard, metrics, startDate, endDate, percentile));
+        weatherMetrics.recordQueryPhase(WeatherMetrics.FETCH, source, started);
 
-        if (sensors.size() != sensorIds.size()) {
-            List<Long> missingSensorIds = sensorIds.stream()
-                    .filter(sensorId -> sensors.stream().noneMatch(sensor -> sensor.getSensorId().equals(sensorId)))
-                    .collect(Collectors.toList());
+        started = System.nanoTime();
+        Map<Long, Map<String, Double>> result = new HashMap<>();
+        aggregator.getGroups().forEach((sensorId, accumulators) -> {
+            Map<String, Double> metricsMap = new HashMap<>();
+            accumulators.forEach((metricType, accumulator) -> metricsMap.put(metricType, computeStatistics(accumulator, statistic)));
+            result.put(sensorId, metricsMap);
+        });
+        weatherMetrics.recordQueryPhase(WeatherMetrics.AGGREGATION, source, started);
+        return result;
+    }
 
-            throw new SomeSensorsNotFoundException("Sensors not found for IDs: " + missingSensorIds);
+    @Override
+    public Map<Long, Map<String, List<SeriesPointDto>>> querySensorSeries(List<Long> sensorIds, List<String> metrics, String statistic,
+                                                                        LocalDateTime startDate, LocalDateTime endDate,
+                                                                        Duration interval, Integer maxPoints) {
+        if (interval.getSeconds() < 1 || !interval.equals(Duration.ofSeconds(interval.getSeconds()))) {
+            throw new IllegalStateException("Interval must be a whole number of seconds");
+        }
+        if (Duration.between(startDate, endDate).dividedBy(interval) >= maxSeriesBuckets) {
+            throw new IllegalStateException("Interval is too small for the date range, at most " + maxSeriesBuckets + " buckets are returned");
         }
+        if (maxPoints != null && maxPoints < 3) {
+            throw new IllegalStateException("maxPoints must be at least 3");
+        }
+        boolean percentile = validateQuery(sensorIds, statistic);
 
-        List<Metric> metricList = metricRepository.findBySensor_SensorIdInAndTypeInAndRecordedTimeBetween(sensorIds, metrics, startDate, endDate);
+        SeriesAggregator series;
+        if (hotStore.covers(startDate)) {
+            series = hotStore.series(sensorIds, metrics, startDate, endDate, interval, percentile);
+        } else if (rollupService.isEnabled()) {
+            series = rollupService.series(sensorIds, metrics, startDate, endDate, interval, percentile);
+        } else {
+            SeriesAggregator raw = new SeriesAggregator(interval, percentile);
+            readingStore.forEachReading(sensorIds, metrics, startDate, endDate,
+                    reading -> raw.add(reading.getSensorId(), reading.getType(), reading.getRecordedTime(), reading.getData()));
+            series = raw;
+        }
 
-        Map<Long, Map<String, Double>> result = new HashMap<>();
+        Map<Long, Map<String, List<SeriesPointDto>>> result = new HashMap<>();
+        series.getGroups().forEach((sensorId, buckets) -> {
+            Map<String, List<SeriesPointDto>> metricsMap = new HashMap<>();
+            buckets.forEach((metricType, accumulators) -> {
+                List<SeriesPointDto> points = new ArrayList<>(accumulators.size());
+                accumulators.forEach((bucketStart, accumulator) ->
+                        points.add(new SeriesPointDto(bucketStart, computeStatistics(accumulator, statistic))));
+                metricsMap.put(metricType, maxPoints == null ? points : LargestTriangleThreeBuckets.downsample(points, maxPoints));
+            });
+            result.put(sensorId, metricsMap);
+        });
+        return result;
+    }
 
-        for (Metric metric : metricList) {
-            Long sensorId = metric.getSensor().getSensorId();
-            String metricType = metric.getType();
+    /**
+     * Checks that every sensor exists and the statistic is supported; returns whether it is a percentile.
+     */
+    private boolean validateQuery(List<Long> sensorIds, String statistic) {
+        Map<Long, SensorInfo> sensors = sensorRegistry.findAll(sensorIds);
 
-            result.putIfAbsent(sensorId, new HashMap<>());
-            Map<String, Double> metricsMap = result.get(sensorId);
+        if (sensors.isEmpty()) {
+            throw new SensorNotFoundException("No sensors found for the provided sensor IDs: " + sensorIds);
+        }
 
-            List<Double> values = metricList.stream()
-                    .filter(i -> i.getSensor().getSensorId().equals(sensorId) && i.getType().equals(metricType))
-                    .map(i -> i.getData())
-                    .collect(Collectors.toList());
+        List<Long> missingSensorIds = sensorIds.stream()
+                .filter(sensorId -> !sensors.containsKey(sensorId))
+                .collect(Collectors.toList());
+        if (!missingSensorIds.isEmpty()) {
+            throw new SomeSensorsNotFoundException("Sensors not found for IDs: " + missingSensorIds);
+        }
 
-            metricsMap.put(metricType, computeStatistics(values, statistic));
+        boolean percentile = PERCENTILE.matcher(statistic.toLowerCase()).matches();
+        if (!percentile && !DATABASE_STATISTICS.contains(statistic.toLowerCase())) {
+            throw new InvalidStatisticException("Invalid statistic " + statistic);
+        }
+        return percentile;
+    }
+
+    private MetricAggregator fetch(String source, List<Long> sensorIds, List<String> metrics, LocalDateTime startDate,
+                                   LocalDateTime endDate, boolean percentile) {
+        switch (source) {
+            case "hotstore":
+                return hotStore.aggregate(sensorIds, metrics, startDate, endDate, percentile);
+            case "rollup":
+                return rollupService.aggregate(sensorIds, metrics, startDate, endDate, percentile);
+            case "stream":
+                return aggregateInMemory(sensorIds, metrics, startDate, endDate);
+            default:
+                return aggregateInDatabase(sensorIds, metrics, startDate, endDate);
         }
-        return result;
     }
 
-    private Double computeStatistics(List<Double> values, String statistic) throws InvalidStatisticException {
+    private MetricAggregator aggregateInDatabase(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate) {
+        MetricAggregator aggregator = new MetricAggregator(metricTypeRegistry);
+        for (MetricAggregateDto aggregate : readingStore.aggregate(sensorIds, metrics, startDate, endDate)) {
+            aggregator.merge(aggregate.getSensorId(), aggregate.getType(),
+                    StatisticAccumulator.of(aggregate.getCount(), aggregate.getSum(), aggregate.getMin(), aggregate.getMax(),
+                            aggregate.getSumOfSquares()));
+        }
+        return aggregator;
+    }
+
+    private MetricAggregator aggregateInMemory(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate) {
+        MetricAggregator aggregator = new MetricAggregator(metricTypeRegistry, true);
+        readingStore.forEachReading(sensorIds, metrics, startDate, endDate,
+                reading -> aggregator.add(reading.getSensorId(), reading.getType(), reading.getData()));
+        return aggregator;
+    }
+
+    private Double computeStatistics(StatisticAccumulator accumulator, String statistic) throws InvalidStatisticException {
 
         switch (statistic.toLowerCase()){
             case "sum" :
-                return values.stream().mapToDouble(i -> i).sum();
+                return accumulator.getSum();
             case "max" :
-                return values.stream().mapToDouble(i -> i).max().orElse(Double.NaN);
+                return accumulator.isEmpty() ? Double.NaN : accumulator.getMax();
             case "min" :
-                return values.stream().mapToDouble(i -> i).min().orElse(Double.NaN);
+                return accumulator.isEmpty() ? Double.NaN : accumulator.getMin();
             case "average" :
-                return values.stream().mapToDouble(i -> i).average().orElse(0);
+                return accumulator.getAverage();
+            case "count" :
+                return (double) accumulator.getCount();
+            case "stddev" :
+                return accumulator.getStandardDeviation();
             default:
+                Matcher percentile = PERCENTILE.matcher(statistic.toLowerCase());
+                if (percentile.matches()) {
+                    return accumulator.getQuantile(Double.parseDouble(percentile.group(1)) / 100);
+                }
                 throw new InvalidStatisticException("Invalid statistic " + statistic);
 
         }
     }
 
-    private void saveMetrics(Sensor sensor, List<MetricDto> metricList) {
+    private void validateSensorRequest(RequestDto requestDto) {
+        readingValidator.validateSensor(requestDto.getSensorId(), requestDto.getLocation());
+    }
+
+    private void checkLocation(Sensor sensor, String location) {
+        if (!sensor.getLocation().equals(location)) {
+            weatherMetrics.locationConflict();
+            throw new SensorLocationConflictException("Sensor " + sensor.getSensorId() +
+                    " is already assigned to " + sensor.getLocation() + ", cannot change to " + location);
+        }
+    }
+
+    private Sensor findOrCreateSensor(RequestDto requestDto) {
+        Optional<SensorInfo> existingSensor = sensorRegistry.find(requestDto.getSensorId());
+        if (existingSensor.isPresent()) {
+            Sensor sensor = existingSensor.get().toSensor();
+            checkLocation(sensor, requestDto.getLocation());
+            return sensor;
+        }
+        return createSensor(requestDto.getSensorId(), requestDto.getLocation());
+    }
+
+    private Sensor createSensor(Long sensorId, String location) {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(sensorId);
+        sensor.setLocation(location);
+        sensor.setRecordedTime(LocalDateTime.now());
+        sensor.setMetricList(new ArrayList<>());
+        Sensor saved;
+        try {
+            saved = sensorRepository.save(sensor);
+        } catch (DataIntegrityViolationException e) {
+            // Registered concurrently by another request; use that row.
+            saved = sensorRepository.findBySensorId(sensorId).orElseThrow(() -> e);
+            checkLocation(saved, location);
+        }
+        sensorRegistry.register(saved);
+        return saved;
+    }
+
+    /**
+     * Idempotency key of a reading: the client's reading ID if given, otherwise its type and
+     * recorded time. Readings with neither are always stored, so repeated values are kept.
+     */
+    private String readingKey(Long sensorId, MetricDto metricDto) {
+        if (metricDto.getReadingId() != null) {
+            return sensorId + "/id:" + metricDto.getReadingId();
+        }
+        return readingKey(sensorId, metricDto.getType(), metricDto.getRecordedTime());
+    }
+
+    private String readingKey(Long sensorId, String type, LocalDateTime recordedTime) {
+        return recordedTime == null ? null : sensorId + "/" + type + "@" + recordedTime;
+    }
+
+    private boolean isDuplicate(Long sensorId, String readingKey, Set<String> batchKeys) {
+        return readingKey != null && (readingKeyFilter.contains(sensorId, readingKey) || !batchKeys.add(readingKey));
+    }
+
+    private Metric toMetric(Sensor sensor, MetricDto metricDto, String readingKey) {
+        return toMetric(sensor, metricDto.getType(), metricDto.getData(), metricDto.getRecordedTime(), readingKey);
+    }
+
+    private Metric toMetric(Sensor sensor, String type, Double data, LocalDateTime recordedTime, String readingKey) {
+        Metric m = new Metric();
+        m.setType(type);
+        m.setData(data);
+        m.setRecordedTime(recordedTime == null ? LocalDateTime.now() : recordedTime);
+        m.setSensor(sensor);
+        m.setReadingKey(readingKey);
+        return m;
+    }
+
+    private List<Metric> saveMetrics(Sensor sensor, List<MetricDto> metricList) {
+        long started = System.nanoTime();
+        Set<String> batchKeys = new HashSet<>();
+        List<Metric> pending = new ArrayList<>();
         for (MetricDto metric : metricList) {
-            Optional<Metric> existingMetric = metricRepository.findBySensorAndTypeAndData(sensor, metric.getType(), metric.getData());
-
-            if (!existingMetric.isPresent()) {
-                Metric m = new Metric();
-                m.setType(metric.getType());
-                m.setData(metric.getData());
-                m.setRecordedTime(LocalDateTime.now());
-                m.setSensor(sensor);
-                metricRepository.saveAndFlush(m);
+            String readingKey = readingKey(sensor.getSensorId(), metric);
+            if (!isDuplicate(sensor.getSensorId(), readingKey, batchKeys)) {
+                pending.add(toMetric(sensor, metric, readingKey));
+            }
+        }
+        weatherMetrics.duplicatesSkipped(metricList.size() - pending.size());
+        weatherMetrics.recordIngestPhase(WeatherMetrics.DEDUP, started);
+        return insertMetrics(pending);
+    }
+
+    /**
+     * Same as {@link #saveMetrics} for binary readings, read straight from their columns.
+     */
+    private List<Metric> saveReadings(Sensor sensor, ReadingBatch readings) {
+        long started = System.nanoTime();
+        Set<String> batchKeys = new HashSet<>();
+        List<Metric> pending = new ArrayList<>(readings.size());
+        for (int i = 0; i < readings.size(); i++) {
+            String type = readings.getType(i);
+            LocalDateTime recordedTime = readings.getRecordedTime(i);
+            String readingKey = readingKey(sensor.getSensorId(), type, recordedTime);
+            if (!isDuplicate(sensor.getSensorId(), readingKey, batchKeys)) {
+                pending.add(toMetric(sensor, type, readings.getValue(i), recordedTime, readingKey));
             }
         }
+        weatherMetrics.duplicatesSkipped(readings.size() - pending.size());
+        weatherMetrics.recordIngestPhase(WeatherMetrics.DEDUP, started);
+        return insertMetrics(pending);
+    }
+
+    private List<Metric> insertMetrics(List<Metric> metrics) {
+        if (metrics.isEmpty()) {
+            return metrics;
+        }
+        long started = System.nanoTime();
+        List<Metric> saved;
+        try {
+            saved = metricWriter.write(metrics);
+        } catch (DataIntegrityViolationException e) {
+            // A key the filter no longer remembers is already stored; drop those readings and retry once.
+            Set<String> existingKeys = new HashSet<>(readingStore.findExistingReadingKeys(metrics.stream()
+                    .map(Metric::getReadingKey)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())));
+            List<Metric> remaining = metrics.stream()
+                    .filter(m -> m.getReadingKey() == null || !existingKeys.contains(m.getReadingKey()))
+                    .collect(Collectors.toList());
+            remaining.forEach(m -> m.setId(null));
+            weatherMetrics.duplicatesSkipped(metrics.size() - remaining.size());
+            saved = metricWriter.write(remaining);
+        }
+        weatherMetrics.recordIngestPhase(WeatherMetrics.INSERT, started);
+        weatherMetrics.readingsAccepted(saved.size());
+
+        saved.stream()
+                .filter(m -> m.getReadingKey() != null)
+                .collect(Collectors.groupingBy(m -> m.getSensor().getSensorId(),
+                        Collectors.mapping(Metric::getReadingKey, Collectors.toList())))
+                .forEach(readingKeyFilter::addAll);
+        return saved;
     }
 
 
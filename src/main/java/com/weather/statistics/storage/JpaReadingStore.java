@@ -0,0 +1,84 @@
+package com.weather.statistics.storage;
+
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.repository.MetricRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Default engine: one {@link Metric} row per reading. Reads stream plain projections in chunks
+ * inside a read-only transaction, so memory use does not grow with the size of the range, and
+ * aggregates are computed by the database.
+ */
+@Component
+@ConditionalOnProperty(name = "weather.storage.engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaReadingStore implements ReadingStore {
+
+    private final MetricRepository metricRepository;
+
+    public JpaReadingStore(MetricRepository metricRepository) {
+        this.metricRepository = metricRepository;
+    }
+
+    @Override
+    public List<Metric> append(List<Metric> metrics) {
+        return metricRepository.saveAll(metrics);
+    }
+
+    @Override
+    public List<String> findExistingReadingKeys(Collection<String> readingKeys) {
+        return metricRepository.findExistingReadingKeys(readingKeys);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachReading(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                               Consumer<MetricReadingDto> consumer) {
+        forEach(metricRepository.streamReadings(sensorIds, metrics, startDate, endDate), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachReadingHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to,
+                                       Consumer<MetricReadingDto> consumer) {
+        forEach(metricRepository.streamReadingsHalfOpen(sensorIds, metrics, from, to), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachReadingInOrder(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                                      Consumer<MetricReadingDto> consumer) {
+        forEach(metricRepository.streamReadingsInOrder(sensorIds, metrics, startDate, endDate), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachReadingSince(LocalDateTime from, Consumer<MetricReadingDto> consumer) {
+        forEach(metricRepository.streamReadingsSince(from), consumer);
+    }
+
+    @Override
+    public List<MetricAggregateDto> aggregate(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate) {
+        return metricRepository.aggregateBySensorAndType(sensorIds, metrics, startDate, endDate);
+    }
+
+    @Override
+    public List<MetricAggregateDto> aggregateHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to) {
+        return metricRepository.aggregateBySensorAndTypeHalfOpen(sensorIds, metrics, from, to);
+    }
+
+    private static void forEach(Stream<MetricReadingDto> readings, Consumer<MetricReadingDto> consumer) {
+        try (readings) {
+            readings.forEach(consumer);
+        }
+    }
+}
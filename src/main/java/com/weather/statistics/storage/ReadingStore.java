@@ -0,0 +1,52 @@
+package com.weather.statistics.storage;
+
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Where raw readings live. Sensors and rollups stay in JPA; only the reading rows go through
+ * this interface, selected with {@code weather.storage.engine} ({@code jpa} or {@code segment}).
+ * Range methods named without a suffix include both ends; {@code HalfOpen} ones exclude the end.
+ */
+public interface ReadingStore {
+
+    /**
+     * Stores readings as part of the caller's write; returns them as stored. If a reading key is
+     * already stored, nothing is stored and a {@link org.springframework.dao.DataIntegrityViolationException} is thrown.
+     * Stores outside the database write once the caller's transaction commits, and empty the
+     * returned list if that write fails.
+     */
+    List<Metric> append(List<Metric> metrics);
+
+    /**
+     * Reading keys among {@code readingKeys} that are already stored.
+     */
+    List<String> findExistingReadingKeys(Collection<String> readingKeys);
+
+    void forEachReading(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                        Consumer<MetricReadingDto> consumer);
+
+    void forEachReadingHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to,
+                                Consumer<MetricReadingDto> consumer);
+
+    /**
+     * Like {@link #forEachReading}, ordered by sensor, then recorded time, then insertion order.
+     */
+    void forEachReadingInOrder(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                               Consumer<MetricReadingDto> consumer);
+
+    /**
+     * Every reading recorded at or after {@code from}, in recorded-time order at least per sensor.
+     */
+    void forEachReadingSince(LocalDateTime from, Consumer<MetricReadingDto> consumer);
+
+    List<MetricAggregateDto> aggregate(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate);
+
+    List<MetricAggregateDto> aggregateHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,36 @@
+package com.weather.statistics.storage.compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bit fields written by {@link BitWriter} from a region of a buffer, using absolute gets
+ * so the buffer can be shared by concurrent readers.
+ */
+final class BitReader {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private long position;
+
+    BitReader(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    long readBits(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            int current = buffer.get(offset + (int) (position >>> 3)) & 0xFF;
+            int available = 8 - (int) (position & 7);
+            int take = Math.min(available, bits);
+            value = (value << take) | ((current >>> (available - take)) & ((1 << take) - 1));
+            bits -= take;
+            position += take;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,42 @@
+package com.weather.statistics.storage.compression;
+
+import java.util.Arrays;
+
+/**
+ * Appends bit fields most-significant bit first into a growing byte array.
+ */
+final class BitWriter {
+
+    private byte[] bytes;
+    private long position;
+
+    BitWriter(int initialBytes) {
+        bytes = new byte[Math.max(16, initialBytes)];
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the low {@code bits} bits of {@code value}, 1 to 64.
+     */
+    void writeBits(long value, int bits) {
+        while (bits > 0) {
+            int index = (int) (position >>> 3);
+            if (index == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int available = 8 - (int) (position & 7);
+            int take = Math.min(available, bits);
+            int chunk = (int) (value >>> (bits - take)) & ((1 << take) - 1);
+            bytes[index] |= (byte) (chunk << (available - take));
+            bits -= take;
+            position += take;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((position + 7) >>> 3));
+    }
+}
@@ -0,0 +1,140 @@
+package com.weather.statistics.storage.compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gorilla-style compression of one time series block (Pelkonen et al., "Gorilla: A Fast,
+ * Scalable, In-Memory Time Series Database"). Timestamps are stored as delta-of-deltas in
+ * variable-width buckets, values as the XOR with the previous value, keeping only the
+ * meaningful bits. Regular intervals and slowly changing readings cost a few bits each.
+ * <p>
+ * Timestamps are epoch microseconds, so the delta-of-delta buckets are wider than the paper's
+ * second-based ones. Points should be in time order; any order round-trips, but costs more.
+ */
+public final class GorillaBlock {
+
+    // Prefix bits and payload widths of the delta-of-delta buckets, after the single-bit zero case.
+    private static final int[] DOD_PREFIX_BITS = {2, 3, 4, 5, 5};
+    private static final int[] DOD_PREFIX = {0b10, 0b110, 0b1110, 0b11110, 0b11111};
+    private static final int[] DOD_BITS = {7, 12, 20, 32, 64};
+
+    private GorillaBlock() {
+    }
+
+    public static byte[] encode(long[] times, double[] values, int count) {
+        BitWriter writer = new BitWriter(count * 2 + 24);
+        writer.writeBits(count, 32);
+        if (count == 0) {
+            return writer.toByteArray();
+        }
+        writer.writeBits(times[0], 64);
+        writer.writeBits(Double.doubleToRawLongBits(values[0]), 64);
+
+        long previousTime = times[0];
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = times[i] - previousTime;
+            writeDeltaOfDelta(writer, delta - previousDelta);
+            previousTime = times[i];
+            previousDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previousBits;
+            previousBits = bits;
+            if (xor == 0) {
+                writer.writeBit(false);
+                continue;
+            }
+            writer.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                // Fits inside the previous window of meaningful bits.
+                writer.writeBit(false);
+                writer.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                writer.writeBit(true);
+                writer.writeBits(leading, 5);
+                writer.writeBits(meaningful - 1, 6);
+                writer.writeBits(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    public static void decode(byte[] block, PointConsumer consumer) {
+        decode(ByteBuffer.wrap(block), 0, consumer);
+    }
+
+    /**
+     * Decodes the block starting at {@code offset} of {@code buffer} without copying it.
+     */
+    public static void decode(ByteBuffer buffer, int offset, PointConsumer consumer) {
+        BitReader reader = new BitReader(buffer, offset);
+        int count = (int) reader.readBits(32);
+        if (count == 0) {
+            return;
+        }
+        long time = reader.readBits(64);
+        long bits = reader.readBits(64);
+        consumer.accept(time, Double.longBitsToDouble(bits));
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(reader);
+            time += delta;
+
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.readBits(5);
+                    int meaningful = (int) reader.readBits(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                bits ^= reader.readBits(64 - leading - trailing) << trailing;
+            }
+            consumer.accept(time, Double.longBitsToDouble(bits));
+        }
+    }
+
+    private static void writeDeltaOfDelta(BitWriter writer, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writer.writeBit(false);
+            return;
+        }
+        for (int bucket = 0; bucket < DOD_BITS.length; bucket++) {
+            int bits = DOD_BITS[bucket];
+            if (bits == 64 || (deltaOfDelta >= -(1L << (bits - 1)) && deltaOfDelta < (1L << (bits - 1)))) {
+                writer.writeBits(DOD_PREFIX[bucket], DOD_PREFIX_BITS[bucket]);
+                writer.writeBits(deltaOfDelta, bits);
+                return;
+            }
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        // The prefix is a run of ones, terminated by a zero except for the widest bucket.
+        int ones = 0;
+        while (ones < DOD_BITS.length && reader.readBit()) {
+            ones++;
+        }
+        if (ones == 0) {
+            return 0;
+        }
+        int bits = DOD_BITS[ones - 1];
+        long value = reader.readBits(bits);
+        // Sign-extend the payload.
+        return bits == 64 ? value : (value << (64 - bits)) >> (64 - bits);
+    }
+
+    public interface PointConsumer {
+        void accept(long time, double value);
+    }
+}
@@ -0,0 +1,219 @@
+package com.weather.statistics.storage.segment;
+
+import com.weather.statistics.storage.compression.GorillaBlock;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sealed, read-only segment holding one {@link GorillaBlock} per (type, time window). A
+ * directory after the header records each block's type, time range and location, so scans only
+ * decode the blocks that overlap the query, straight from the mapped file. Produced by
+ * compaction; named {@code <seq>.<generation>.blk} with the same replacement rules as
+ * {@link Segment}.
+ */
+final class CompressedSegment implements SegmentFile {
+
+    private static final int HEADER_BYTES = 32;
+    private static final int DIRECTORY_ENTRY_BYTES = 32;
+    private static final int MAGIC = 0x57534743;
+    private static final int VERSION = 1;
+    private static final Pattern FILE_NAME = Pattern.compile("(\\d{20})\\.(\\d+)\\.blk");
+
+    private final Path path;
+    private final long seq;
+    private final long lastSeq;
+    private final int generation;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int[] typeIds;
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private final int[] offsets;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+
+    private CompressedSegment(Path path, long seq, int generation, MappedByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Corrupt compressed segment header: " + path);
+        }
+        this.path = path;
+        this.seq = seq;
+        this.generation = generation;
+        this.buffer = buffer;
+        int blocks = buffer.getInt(8);
+        this.count = buffer.getInt(12);
+        this.lastSeq = buffer.getLong(16);
+        typeIds = new int[blocks];
+        blockMin = new long[blocks];
+        blockMax = new long[blocks];
+        offsets = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            int entry = HEADER_BYTES + i * DIRECTORY_ENTRY_BYTES;
+            typeIds[i] = buffer.getInt(entry);
+            offsets[i] = buffer.getInt(entry + 4);
+            blockMin[i] = buffer.getLong(entry + 8);
+            blockMax[i] = buffer.getLong(entry + 16);
+            minTime = Math.min(minTime, blockMin[i]);
+            maxTime = Math.max(maxTime, blockMax[i]);
+        }
+    }
+
+    static boolean isSegmentFile(Path file) {
+        return FILE_NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    /**
+     * Writes the records, sorted by time, as one block per type and {@code windowMicros} window.
+     * Like {@link Segment#write}, the file only appears under its final name once complete.
+     */
+    static CompressedSegment write(Path directory, long seq, long lastSeq, int generation, RecordBuffer records,
+                                   long windowMicros) throws IOException {
+        long[] times = records.times();
+        int[] types = records.typeIds();
+        double[] values = records.values();
+
+        // Window start -> type -> positions, so blocks are laid out in time order.
+        TreeMap<Long, TreeMap<Integer, List<Integer>>> windows = new TreeMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            windows.computeIfAbsent(Math.floorDiv(times[i], windowMicros), w -> new TreeMap<>())
+                    .computeIfAbsent(types[i], t -> new ArrayList<>())
+                    .add(i);
+        }
+        List<Block> blocks = new ArrayList<>();
+        for (TreeMap<Integer, List<Integer>> window : windows.values()) {
+            window.forEach((typeId, positions) -> {
+                long[] blockTimes = new long[positions.size()];
+                double[] blockValues = new double[positions.size()];
+                for (int i = 0; i < positions.size(); i++) {
+                    blockTimes[i] = times[positions.get(i)];
+                    blockValues[i] = values[positions.get(i)];
+                }
+                blocks.add(new Block(typeId, blockTimes[0], blockTimes[blockTimes.length - 1],
+                        GorillaBlock.encode(blockTimes, blockValues, blockTimes.length)));
+            });
+        }
+
+        long size = HEADER_BYTES + (long) blocks.size() * DIRECTORY_ENTRY_BYTES + blocks.stream().mapToLong(b -> b.payload().length).sum();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Compressed segment too large: " + size + " bytes");
+        }
+        Path temporary = directory.resolve(fileName(seq, generation) + ".tmp");
+        Files.deleteIfExists(temporary);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, blocks.size());
+        buffer.putInt(12, records.size());
+        buffer.putLong(16, lastSeq);
+        int offset = HEADER_BYTES + blocks.size() * DIRECTORY_ENTRY_BYTES;
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            int entry = HEADER_BYTES + i * DIRECTORY_ENTRY_BYTES;
+            buffer.putInt(entry, block.typeId());
+            buffer.putInt(entry + 4, offset);
+            buffer.putLong(entry + 8, block.minTime());
+            buffer.putLong(entry + 16, block.maxTime());
+            buffer.put(offset, block.payload());
+            offset += block.payload().length;
+        }
+        buffer.force();
+        Path path = Files.move(temporary, directory.resolve(fileName(seq, generation)), StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    static CompressedSegment open(Path path) throws IOException {
+        Matcher name = FILE_NAME.matcher(path.getFileName().toString());
+        if (!name.matches()) {
+            throw new IOException("Not a compressed segment file: " + path);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new CompressedSegment(path, Long.parseLong(name.group(1)), Integer.parseInt(name.group(2)),
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public void scan(long from, long to, boolean[] wantedTypes, RecordConsumer consumer) {
+        if (count == 0 || to < minTime || from > maxTime) {
+            return;
+        }
+        for (int i = 0; i < typeIds.length; i++) {
+            int typeId = typeIds[i];
+            if (blockMax[i] < from || blockMin[i] > to
+                    || (wantedTypes != null && (typeId >= wantedTypes.length || !wantedTypes[typeId]))) {
+                continue;
+            }
+            GorillaBlock.decode(buffer, offsets[i], (time, value) -> {
+                if (time >= from && time <= to) {
+                    consumer.accept(time, typeId, value);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public long seq() {
+        return seq;
+    }
+
+    @Override
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    @Override
+    public int generation() {
+        return generation;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean isSealed() {
+        return true;
+    }
+
+    @Override
+    public boolean isSorted() {
+        return true;
+    }
+
+    @Override
+    public long minTime() {
+        return minTime;
+    }
+
+    @Override
+    public long maxTime() {
+        return maxTime;
+    }
+
+    private static String fileName(long seq, int generation) {
+        return String.format("%020d.%d.blk", seq, generation);
+    }
+
+    private record Block(int typeId, long minTime, long maxTime, byte[] payload) {
+    }
+}
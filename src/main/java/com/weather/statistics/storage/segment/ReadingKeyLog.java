@@ -0,0 +1,276 @@
+package com.weather.statistics.storage.segment;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Persistent set of the reading keys stored in the segment engine, limited to readings recent
+ * enough to be sent again. Each key is kept as a 64-bit hash with the recorded time of its
+ * reading, appended to one file and held in an open-addressing table (32 to 64 bytes of heap per
+ * key). {@link #prune} drops keys of readings older than the ingest lateness window, which can
+ * no longer be accepted anyway, from both, so the set stays the size of one window. Keys already
+ * name their sensor, so one log covers the whole store. Two keys sharing a hash would make the
+ * later one look like a duplicate, which at 64 bits stays negligible even for billions of keys.
+ * A torn last entry is dropped on load.
+ */
+final class ReadingKeyLog {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    private final Path file;
+    private long[] table;
+    // Recorded time in epoch microseconds of the key in the same slot of the table.
+    private long[] times;
+    private int size;
+
+    private ReadingKeyLog(Path file, int expectedKeys) {
+        this.file = file;
+        this.table = new long[capacityFor(expectedKeys)];
+        this.times = new long[table.length];
+    }
+
+    static ReadingKeyLog open(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new ReadingKeyLog(file, 0);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long valid = channel.size() - channel.size() % ENTRY_BYTES;
+            if (valid != channel.size()) {
+                // Torn entry from a crash mid-append; cut it off so later entries line up.
+                channel.truncate(valid);
+            }
+            ReadingKeyLog log = new ReadingKeyLog(file, (int) (valid / ENTRY_BYTES));
+            forEachEntry(channel, valid, log::add);
+            return log;
+        }
+    }
+
+    synchronized boolean contains(String key) {
+        return indexOf(hash(key)) >= 0;
+    }
+
+    /**
+     * Adds every key, {@code micros[i]} being the recorded time of the reading of key {@code i},
+     * unless one of them is already stored or listed twice; then nothing is added and that key
+     * is returned. Reserved keys must be {@link #persist persisted} or {@link #release released}.
+     */
+    synchronized String reserve(List<String> keys, long[] micros) {
+        for (int i = 0; i < keys.size(); i++) {
+            long hash = hash(keys.get(i));
+            if (indexOf(hash) >= 0) {
+                for (int j = 0; j < i; j++) {
+                    remove(hash(keys.get(j)));
+                }
+                return keys.get(i);
+            }
+            add(hash, micros[i]);
+        }
+        return null;
+    }
+
+    synchronized void release(List<String> keys) {
+        for (String key : keys) {
+            remove(hash(key));
+        }
+    }
+
+    synchronized void persist(List<String> keys, long[] micros) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(keys.size() * ENTRY_BYTES);
+        for (int i = 0; i < keys.size(); i++) {
+            buffer.putLong(hash(keys.get(i))).putLong(micros[i]);
+        }
+        buffer.flip();
+        write(buffer);
+    }
+
+    /**
+     * Drops every key whose reading was recorded before {@code cutoffMicros}, from memory and
+     * from the file, which is rewritten to a temporary file and moved over the old one. Returns
+     * the number of keys dropped.
+     */
+    synchronized int prune(long cutoffMicros) throws IOException {
+        int before = size;
+        long[] oldTable = table;
+        long[] oldTimes = times;
+        int kept = 0;
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != 0 && oldTimes[i] >= cutoffMicros) {
+                kept++;
+            }
+        }
+        if (kept == before) {
+            return 0;
+        }
+        table = new long[capacityFor(kept)];
+        times = new long[table.length];
+        size = 0;
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != 0 && oldTimes[i] >= cutoffMicros) {
+                add(oldTable[i], oldTimes[i]);
+            }
+        }
+
+        // Rewritten from the file rather than the table: reserved keys not persisted yet stay out of it.
+        if (Files.exists(file)) {
+            Path rewritten = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(rewritten, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer keptEntries = ByteBuffer.allocate(64 * 1024);
+                forEachEntry(in, in.size() - in.size() % ENTRY_BYTES, (hash, micros) -> {
+                    if (micros >= cutoffMicros) {
+                        if (!keptEntries.hasRemaining()) {
+                            keptEntries.flip();
+                            writeFully(out, keptEntries);
+                            keptEntries.clear();
+                        }
+                        keptEntries.putLong(hash).putLong(micros);
+                    }
+                });
+                keptEntries.flip();
+                writeFully(out, keptEntries);
+                out.force(true);
+            }
+            Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return before - size;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            writeFully(channel, buffer);
+        }
+    }
+
+    private int indexOf(long hash) {
+        int mask = table.length - 1;
+        for (int i = (int) hash & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (table[i] == hash) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void add(long hash, long micros) {
+        if ((size + 1) * 2L > table.length) {
+            long[] oldTable = table;
+            long[] oldTimes = times;
+            table = new long[oldTable.length * 2];
+            times = new long[table.length];
+            for (int i = 0; i < oldTable.length; i++) {
+                if (oldTable[i] != 0) {
+                    insert(oldTable[i], oldTimes[i]);
+                }
+            }
+        }
+        if (insert(hash, micros)) {
+            size++;
+        }
+    }
+
+    private boolean insert(long hash, long micros) {
+        int mask = table.length - 1;
+        int i = (int) hash & mask;
+        while (table[i] != 0) {
+            if (table[i] == hash) {
+                // Listed again, as after a crash between persisting and pruning; keep the later time.
+                times[i] = Math.max(times[i], micros);
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = hash;
+        times[i] = micros;
+        return true;
+    }
+
+    // Backward-shift deletion, so lookups never need tombstones.
+    private void remove(long hash) {
+        int gap = indexOf(hash);
+        if (gap < 0) {
+            return;
+        }
+        int mask = table.length - 1;
+        for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = (int) table[i] & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                table[gap] = table[i];
+                times[gap] = times[i];
+                gap = i;
+            }
+        }
+        table[gap] = 0;
+        times[gap] = 0;
+        size--;
+    }
+
+    private interface EntryConsumer {
+        void accept(long hash, long micros) throws IOException;
+    }
+
+    private static void forEachEntry(FileChannel channel, long length, EntryConsumer consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long remaining = length;
+        while (remaining > 0) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+            readFully(channel, buffer);
+            buffer.flip();
+            remaining -= buffer.remaining();
+            while (buffer.hasRemaining()) {
+                consumer.accept(buffer.getLong(), buffer.getLong());
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Reading key log ended early");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int capacityFor(int keys) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < keys * 2L) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    // FNV-1a over the key's chars, then the MurmurHash3 finalizer so the low bits used as the
+    // table index are well mixed. Zero marks an empty slot, so it is never returned.
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,91 @@
+package com.weather.statistics.storage.segment;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Growable column buffer of (time, typeId, value) records, used to batch appends and to sort
+ * records by time for ordered reads and compaction.
+ */
+final class RecordBuffer {
+
+    private long[] times;
+    private int[] typeIds;
+    private double[] values;
+    private int size;
+    private boolean sorted = true;
+
+    RecordBuffer() {
+        this(16);
+    }
+
+    RecordBuffer(int initialCapacity) {
+        times = new long[initialCapacity];
+        typeIds = new int[initialCapacity];
+        values = new double[initialCapacity];
+    }
+
+    void add(long time, int typeId, double value) {
+        if (size == times.length) {
+            int capacity = Math.max(16, size * 2);
+            times = Arrays.copyOf(times, capacity);
+            typeIds = Arrays.copyOf(typeIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        if (size > 0 && time < times[size - 1]) {
+            sorted = false;
+        }
+        times[size] = time;
+        typeIds[size] = typeId;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Stable sort by time, so records with equal times keep their append order.
+     */
+    void sortByTime() {
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+        long[] sortedTimes = new long[size];
+        int[] sortedTypeIds = new int[size];
+        double[] sortedValues = new double[size];
+        for (int i = 0; i < size; i++) {
+            sortedTimes[i] = times[order[i]];
+            sortedTypeIds[i] = typeIds[order[i]];
+            sortedValues[i] = values[order[i]];
+        }
+        times = sortedTimes;
+        typeIds = sortedTypeIds;
+        values = sortedValues;
+        sorted = true;
+    }
+
+    void forEach(SegmentFile.RecordConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(times[i], typeIds[i], values[i]);
+        }
+    }
+
+    long[] times() {
+        return times;
+    }
+
+    int[] typeIds() {
+        return typeIds;
+    }
+
+    double[] values() {
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,298 @@
+package com.weather.statistics.storage.segment;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One memory-mapped file of fixed-width (time, typeId, value) records for a single sensor.
+ * A 32-byte header holds the committed record count and whether the file is sealed; records are
+ * only ever appended to the one unsealed segment of a sensor. The sparse index keeps the time
+ * range of every {@value #INDEX_INTERVAL} records, so scans skip blocks outside the query range.
+ * <p>
+ * Files are named {@code <seq>.<generation>.seg}. A compacted segment replaces the inputs whose
+ * sequence numbers fall in [seq, lastSeq] and carries a higher generation, which is how leftovers
+ * of an interrupted compaction are recognised on startup. Not thread-safe; {@link SensorLog} locks.
+ */
+final class Segment implements SegmentFile {
+
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 20;
+    static final int INDEX_INTERVAL = 1024;
+
+    private static final int MAGIC = 0x57534547;
+    private static final int VERSION = 1;
+    private static final int COUNT_OFFSET = 8;
+    private static final int SEALED_OFFSET = 12;
+    private static final int LAST_SEQ_OFFSET = 16;
+    private static final Pattern FILE_NAME = Pattern.compile("(\\d{20})\\.(\\d+)\\.seg");
+
+    private final Path path;
+    private final long seq;
+    private final long lastSeq;
+    private final int generation;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int count;
+    private boolean sealed;
+    private boolean sorted = true;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private long[] blockMin = new long[0];
+    private long[] blockMax = new long[0];
+
+    private Segment(Path path, long seq, long lastSeq, int generation, MappedByteBuffer buffer) {
+        this.path = path;
+        this.seq = seq;
+        this.lastSeq = lastSeq;
+        this.generation = generation;
+        this.buffer = buffer;
+        this.capacity = (buffer.capacity() - HEADER_BYTES) / RECORD_BYTES;
+    }
+
+    static boolean isSegmentFile(Path file) {
+        return FILE_NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    /**
+     * Creates an empty, writable segment with room for {@code capacity} records.
+     */
+    static Segment create(Path directory, long seq, int capacity) throws IOException {
+        Path path = directory.resolve(fileName(seq, 0));
+        Segment segment = new Segment(path, seq, seq, 0, map(path, HEADER_BYTES + (long) capacity * RECORD_BYTES));
+        segment.writeHeader();
+        return segment;
+    }
+
+    /**
+     * Writes a sealed segment holding the given records, which must be sorted by time. The file
+     * appears under its final name only once complete, so a crash leaves either all of it or none.
+     */
+    static Segment write(Path directory, long seq, long lastSeq, int generation,
+                         long[] times, int[] types, double[] values, int count) throws IOException {
+        Path temporary = directory.resolve(fileName(seq, generation) + ".tmp");
+        Files.deleteIfExists(temporary);
+        Segment segment = new Segment(temporary, seq, lastSeq, generation, map(temporary, HEADER_BYTES + (long) count * RECORD_BYTES));
+        for (int i = 0; i < count; i++) {
+            segment.append(times[i], types[i], values[i]);
+        }
+        segment.sealed = true;
+        segment.writeHeader();
+        segment.buffer.force();
+        Path path = Files.move(temporary, directory.resolve(fileName(seq, generation)), StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    /**
+     * Maps an existing segment and rebuilds its index from the committed records.
+     */
+    static Segment open(Path path) throws IOException {
+        Matcher name = FILE_NAME.matcher(path.getFileName().toString());
+        if (!name.matches()) {
+            throw new IOException("Not a segment file: " + path);
+        }
+        MappedByteBuffer buffer = map(path, Files.size(path));
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Corrupt segment header: " + path);
+        }
+        Segment segment = new Segment(path, Long.parseLong(name.group(1)), buffer.getLong(LAST_SEQ_OFFSET),
+                Integer.parseInt(name.group(2)), buffer);
+        int committed = buffer.getInt(COUNT_OFFSET);
+        if (committed < 0 || committed > segment.capacity) {
+            throw new IOException("Corrupt segment record count: " + path);
+        }
+        for (int i = 0; i < committed; i++) {
+            segment.index(i, segment.time(i));
+        }
+        segment.count = committed;
+        segment.sealed = buffer.get(SEALED_OFFSET) != 0;
+        return segment;
+    }
+
+    /**
+     * Appends one record; returns false when the segment is full or sealed. The count in the
+     * header is not advanced, see {@link #commit()}.
+     */
+    boolean append(long time, int typeId, double value) {
+        if (sealed || count == capacity) {
+            return false;
+        }
+        int offset = HEADER_BYTES + count * RECORD_BYTES;
+        buffer.putLong(offset, time);
+        buffer.putInt(offset + 8, typeId);
+        buffer.putDouble(offset + 12, value);
+        index(count, time);
+        count++;
+        return true;
+    }
+
+    /**
+     * Publishes appended records by writing the count last; records past it are ignored on open.
+     */
+    void commit() {
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    void seal() {
+        sealed = true;
+        writeHeader();
+        buffer.force();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void scan(long from, long to, boolean[] wantedTypes, RecordConsumer consumer) {
+        if (count == 0 || to < minTime || from > maxTime) {
+            return;
+        }
+        int blocks = (count + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        int block = 0;
+        if (sorted) {
+            // Block ranges of a sorted segment are ordered too, so the first candidate is a binary search away.
+            int low = 0;
+            int high = blocks - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (blockMax[mid] < from) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            block = low;
+        }
+        for (; block < blocks; block++) {
+            if (blockMin[block] > to) {
+                if (sorted) {
+                    return;
+                }
+                continue;
+            }
+            if (blockMax[block] < from) {
+                continue;
+            }
+            int end = Math.min(count, (block + 1) * INDEX_INTERVAL);
+            for (int i = block * INDEX_INTERVAL; i < end; i++) {
+                long time = time(i);
+                if (time < from || time > to) {
+                    continue;
+                }
+                int typeId = typeId(i);
+                if (wantedTypes == null || (typeId < wantedTypes.length && wantedTypes[typeId])) {
+                    consumer.accept(time, typeId, value(i));
+                }
+            }
+        }
+    }
+
+    long time(int i) {
+        return buffer.getLong(HEADER_BYTES + i * RECORD_BYTES);
+    }
+
+    int typeId(int i) {
+        return buffer.getInt(HEADER_BYTES + i * RECORD_BYTES + 8);
+    }
+
+    double value(int i) {
+        return buffer.getDouble(HEADER_BYTES + i * RECORD_BYTES + 12);
+    }
+
+    @Override
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public long seq() {
+        return seq;
+    }
+
+    @Override
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    @Override
+    public int generation() {
+        return generation;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    @Override
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    @Override
+    public long minTime() {
+        return minTime;
+    }
+
+    @Override
+    public long maxTime() {
+        return maxTime;
+    }
+
+    private void index(int i, long time) {
+        int block = i / INDEX_INTERVAL;
+        if (block == blockMin.length) {
+            int size = Math.max(4, blockMin.length * 2);
+            blockMin = Arrays.copyOf(blockMin, size);
+            blockMax = Arrays.copyOf(blockMax, size);
+        }
+        if (i % INDEX_INTERVAL == 0) {
+            blockMin[block] = time;
+            blockMax[block] = time;
+        } else {
+            blockMin[block] = Math.min(blockMin[block], time);
+            blockMax[block] = Math.max(blockMax[block], time);
+        }
+        if (time < maxTime) {
+            sorted = false;
+        }
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(COUNT_OFFSET, count);
+        buffer.put(SEALED_OFFSET, (byte) (sealed ? 1 : 0));
+        buffer.putLong(LAST_SEQ_OFFSET, lastSeq);
+    }
+
+    private static String fileName(long seq, int generation) {
+        return String.format("%020d.%d.seg", seq, generation);
+    }
+
+    // The mapping outlives the channel, so the file handle is released straight away.
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.weather.statistics.storage.segment;
+
+import java.io.IOException;
+
+/**
+ * A segment of one sensor's log, either the fixed-width {@link Segment} that appends go to or a
+ * sealed, compressed {@link CompressedSegment}. Both cover the sequence range [seq, lastSeq].
+ */
+interface SegmentFile {
+
+    long seq();
+
+    long lastSeq();
+
+    int generation();
+
+    int count();
+
+    boolean isSealed();
+
+    /**
+     * Whether compaction would gain nothing by re-sorting the records.
+     */
+    boolean isSorted();
+
+    long minTime();
+
+    long maxTime();
+
+    /**
+     * Calls {@code consumer} for every record with {@code from <= time <= to} whose type is
+     * wanted; a null {@code wantedTypes} accepts every type.
+     */
+    void scan(long from, long to, boolean[] wantedTypes, RecordConsumer consumer);
+
+    void delete() throws IOException;
+
+    interface RecordConsumer {
+        void accept(long time, int typeId, double value);
+    }
+}
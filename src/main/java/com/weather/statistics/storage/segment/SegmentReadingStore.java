@@ -0,0 +1,358 @@
+package com.weather.statistics.storage.segment;
+
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.storage.ReadingStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only engine keeping each sensor's readings in memory-mapped segment files of
+ * fixed-width records under {@code weather.storage.segment.directory}. Writes skip the ORM and
+ * survive restarts; a background task compacts sealed segments into Gorilla-compressed blocks
+ * per (type, {@code weather.storage.segment.block-window}) and applies the optional retention.
+ * Reading keys are kept in a {@link ReadingKeyLog} and enforced like the database's unique key:
+ * an append containing a stored key fails as a whole. Keys of readings older than
+ * {@code weather.ingest.max-lateness}, which ingest refuses anyway, are dropped on compaction.
+ * <p>
+ * The files are not part of the caller's transaction. Inside one, an append only reserves its
+ * keys, so duplicates still fail the write, and the readings are written once it commits; a
+ * rollback releases the keys and leaves the files untouched.
+ */
+@Component
+@ConditionalOnProperty(name = "weather.storage.engine", havingValue = "segment")
+public class SegmentReadingStore implements ReadingStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentReadingStore.class);
+    private static final String SENSOR_PREFIX = "sensor-";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final Duration retention;
+    private final Duration compactionInterval;
+    private final long blockWindowMicros;
+    private final Duration keyWindow;
+    private final Map<Long, SensorLog> sensors = new ConcurrentSkipListMap<>();
+    private TypeDictionary types;
+    private ReadingKeyLog readingKeys;
+    private ScheduledExecutorService compactor;
+
+    public SegmentReadingStore(@Value("${weather.storage.segment.directory:data/segments}") Path directory,
+                               @Value("${weather.storage.segment.records-per-segment:65536}") int recordsPerSegment,
+                               @Value("${weather.storage.segment.retention:#{null}}") Duration retention,
+                               @Value("${weather.storage.segment.compaction-interval:PT10M}") Duration compactionInterval,
+                               @Value("${weather.storage.segment.block-window:PT1H}") Duration blockWindow,
+                               @Value("${weather.ingest.max-lateness:PT24H}") Duration keyWindow) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.retention = retention;
+        this.compactionInterval = compactionInterval;
+        this.blockWindowMicros = blockWindow.toNanos() / 1_000;
+        this.keyWindow = keyWindow;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        types = TypeDictionary.open(directory.resolve("types.dat"));
+        readingKeys = ReadingKeyLog.open(directory.resolve("reading-keys.dat"));
+        readingKeys.prune(keyCutoff());
+        try (DirectoryStream<Path> sensorDirectories = Files.newDirectoryStream(directory, SENSOR_PREFIX + "*")) {
+            for (Path sensorDirectory : sensorDirectories) {
+                long sensorId = Long.parseLong(sensorDirectory.getFileName().toString().substring(SENSOR_PREFIX.length()));
+                sensors.put(sensorId, SensorLog.open(sensorDirectory, recordsPerSegment, blockWindowMicros));
+            }
+        }
+        log.info("Segment store opened {} sensors with {} readings and {} reading keys in {} ms", sensors.size(),
+                sensors.values().stream().mapToLong(SensorLog::readings).sum(), readingKeys.size(),
+                (System.nanoTime() - started) / 1_000_000);
+
+        compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "segment-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly, compactionInterval.toMillis(), compactionInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        compactor.shutdownNow();
+        compactor.awaitTermination(30, TimeUnit.SECONDS);
+        sensors.values().forEach(SensorLog::close);
+    }
+
+    @Override
+    public List<Metric> append(List<Metric> metrics) {
+        List<Metric> keyed = metrics.stream().filter(metric -> metric.getReadingKey() != null).toList();
+        List<String> keys = keyed.stream().map(Metric::getReadingKey).toList();
+        long[] keyTimes = keyed.stream().mapToLong(metric -> toMicros(metric.getRecordedTime())).toArray();
+        String duplicate = keys.isEmpty() ? null : readingKeys.reserve(keys, keyTimes);
+        if (duplicate != null) {
+            throw new DataIntegrityViolationException("Reading key " + duplicate + " is already stored");
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(metrics, keys, keyTimes);
+            return metrics;
+        }
+        List<Metric> stored = new ArrayList<>(metrics);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            // The exception reaches whoever committed. After-commit event listeners still run, so
+            // the list handed to them is emptied first and they see no readings.
+            @Override
+            public void afterCommit() {
+                try {
+                    write(metrics, keys, keyTimes);
+                } catch (RuntimeException e) {
+                    stored.clear();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    readingKeys.release(keys);
+                }
+            }
+        });
+        return stored;
+    }
+
+    private void write(List<Metric> metrics, List<String> keys, long[] keyTimes) {
+        Map<Long, RecordBuffer> bySensor = new LinkedHashMap<>();
+        boolean appended = false;
+        try {
+            for (Metric metric : metrics) {
+                bySensor.computeIfAbsent(metric.getSensor().getSensorId(), id -> new RecordBuffer())
+                        .add(toMicros(metric.getRecordedTime()), types.idOf(metric.getType()), metric.getData());
+            }
+            for (Map.Entry<Long, RecordBuffer> entry : bySensor.entrySet()) {
+                sensorLog(entry.getKey()).append(entry.getValue());
+            }
+            appended = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append readings to the segment store", e);
+        } finally {
+            if (!appended) {
+                readingKeys.release(keys);
+            }
+        }
+        // Keys are written after their readings: a crash in between can let a re-sent reading in
+        // again, but never turns one away whose first copy was lost.
+        try {
+            if (!keys.isEmpty()) {
+                readingKeys.persist(keys, keyTimes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record reading keys in the segment store", e);
+        }
+    }
+
+    @Override
+    public List<String> findExistingReadingKeys(Collection<String> keys) {
+        return keys.stream().filter(readingKeys::contains).toList();
+    }
+
+    @Override
+    public void forEachReading(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                               Consumer<MetricReadingDto> consumer) {
+        scan(new LinkedHashSet<>(sensorIds), metrics, toMicros(startDate), toMicros(endDate), false, consumer);
+    }
+
+    @Override
+    public void forEachReadingHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to,
+                                       Consumer<MetricReadingDto> consumer) {
+        scan(new LinkedHashSet<>(sensorIds), metrics, toMicros(from), toMicros(to) - 1, false, consumer);
+    }
+
+    @Override
+    public void forEachReadingInOrder(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate,
+                                      Consumer<MetricReadingDto> consumer) {
+        scan(new TreeSet<>(sensorIds), metrics, toMicros(startDate), toMicros(endDate), true, consumer);
+    }
+
+    @Override
+    public void forEachReadingSince(LocalDateTime from, Consumer<MetricReadingDto> consumer) {
+        long fromMicros = toMicros(from);
+        sensors.forEach((sensorId, sensorLog) -> sensorLog.scanInOrder(fromMicros, Long.MAX_VALUE, null,
+                (time, typeId, value) -> consumer.accept(toReading(sensorId, time, typeId, value))));
+    }
+
+    @Override
+    public List<MetricAggregateDto> aggregate(List<Long> sensorIds, List<String> metrics, LocalDateTime startDate, LocalDateTime endDate) {
+        return aggregate(sensorIds, metrics, toMicros(startDate), toMicros(endDate));
+    }
+
+    @Override
+    public List<MetricAggregateDto> aggregateHalfOpen(List<Long> sensorIds, List<String> metrics, LocalDateTime from, LocalDateTime to) {
+        return aggregate(sensorIds, metrics, toMicros(from), toMicros(to) - 1);
+    }
+
+    /**
+     * Runs one compaction pass over every sensor and drops reading keys that aged out of the
+     * lateness window; returns the number of segments replaced.
+     */
+    public int compact() throws IOException {
+        int expiredKeys = readingKeys.prune(keyCutoff());
+        if (expiredKeys > 0) {
+            log.info("Dropped {} reading keys older than {}", expiredKeys, keyWindow);
+        }
+        long cutoff = retention == null ? Long.MIN_VALUE : toMicros(LocalDateTime.now().minus(retention));
+        int replaced = 0;
+        for (SensorLog sensorLog : sensors.values()) {
+            replaced += sensorLog.compact(cutoff);
+        }
+        return replaced;
+    }
+
+    private long keyCutoff() {
+        return toMicros(LocalDateTime.now().minus(keyWindow));
+    }
+
+    private void compactQuietly() {
+        try {
+            long started = System.nanoTime();
+            int replaced = compact();
+            if (replaced > 0) {
+                log.info("Compacted {} segments in {} ms", replaced, (System.nanoTime() - started) / 1_000_000);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Segment compaction failed, will retry", e);
+        }
+    }
+
+    private List<MetricAggregateDto> aggregate(List<Long> sensorIds, List<String> metrics, long from, long to) {
+        boolean[] wantedTypes = wantedTypes(metrics);
+        List<MetricAggregateDto> aggregates = new ArrayList<>();
+        if (wantedTypes == null) {
+            return aggregates;
+        }
+        int typeCount = wantedTypes.length;
+        for (Long sensorId : new TreeSet<>(sensorIds)) {
+            SensorLog sensorLog = sensors.get(sensorId);
+            if (sensorLog == null) {
+                continue;
+            }
+            long[] count = new long[typeCount];
+            double[] sum = new double[typeCount];
+            double[] sumOfSquares = new double[typeCount];
+            double[] min = new double[typeCount];
+            double[] max = new double[typeCount];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            sensorLog.scan(from, to, wantedTypes, (time, typeId, value) -> {
+                count[typeId]++;
+                sum[typeId] += value;
+                sumOfSquares[typeId] += value * value;
+                min[typeId] = Math.min(min[typeId], value);
+                max[typeId] = Math.max(max[typeId], value);
+            });
+            for (int typeId = 1; typeId < typeCount; typeId++) {
+                if (count[typeId] > 0) {
+                    aggregates.add(new MetricAggregateDto(sensorId, types.name(typeId), count[typeId], sum[typeId],
+                            min[typeId], max[typeId], sumOfSquares[typeId]));
+                }
+            }
+        }
+        return aggregates;
+    }
+
+    private void scan(Collection<Long> sensorIds, List<String> metrics, long from, long to, boolean ordered,
+                      Consumer<MetricReadingDto> consumer) {
+        boolean[] wantedTypes = wantedTypes(metrics);
+        if (wantedTypes == null) {
+            return;
+        }
+        for (Long sensorId : sensorIds) {
+            SensorLog sensorLog = sensors.get(sensorId);
+            if (sensorLog == null) {
+                continue;
+            }
+            SegmentFile.RecordConsumer reading = (time, typeId, value) -> consumer.accept(toReading(sensorId, time, typeId, value));
+            if (ordered) {
+                sensorLog.scanInOrder(from, to, wantedTypes, reading);
+            } else {
+                sensorLog.scan(from, to, wantedTypes, reading);
+            }
+        }
+    }
+
+    /**
+     * Type filter indexed by type ID, or null if none of the requested types has been stored.
+     */
+    private boolean[] wantedTypes(List<String> metrics) {
+        int[] ids = metrics.stream().mapToInt(types::find).filter(id -> id > 0).toArray();
+        if (ids.length == 0) {
+            return null;
+        }
+        boolean[] wanted = new boolean[Arrays.stream(ids).max().getAsInt() + 1];
+        for (int id : ids) {
+            wanted[id] = true;
+        }
+        return wanted;
+    }
+
+    private SensorLog sensorLog(Long sensorId) {
+        return sensors.computeIfAbsent(sensorId, id -> {
+            try {
+                return SensorLog.open(directory.resolve(SENSOR_PREFIX + id), recordsPerSegment, blockWindowMicros);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private MetricReadingDto toReading(Long sensorId, long micros, int typeId, double value) {
+        return new MetricReadingDto(sensorId, types.name(typeId), value, toTime(micros));
+    }
+
+    // Same resolution as the database's timestamp column, so both engines agree on range edges.
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime toTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,257 @@
+package com.weather.statistics.storage.segment;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The ordered segments of one sensor. Appends go to the last, unsealed segment and roll over to
+ * a new one when it fills up; sealed segments never change again except by being replaced as a
+ * whole during compaction, which also compresses them when a block window is configured.
+ * Appends take the write lock, scans the read lock.
+ */
+final class SensorLog {
+
+    private static final long DEFAULT_SLICE_MICROS = 3_600_000_000L;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long blockWindowMicros;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<SegmentFile> segments;
+    private long nextSeq;
+
+    private SensorLog(Path directory, int recordsPerSegment, long blockWindowMicros, List<SegmentFile> segments) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.blockWindowMicros = blockWindowMicros;
+        this.segments = segments;
+        this.nextSeq = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).lastSeq() + 1;
+    }
+
+    /**
+     * Opens the segments in {@code directory}, discarding unfinished compaction output and any
+     * segment already replaced by a compacted one. With a {@code blockWindowMicros} of 0,
+     * compaction keeps the fixed-width format.
+     */
+    static SensorLog open(Path directory, int recordsPerSegment, long blockWindowMicros) throws IOException {
+        Files.createDirectories(directory);
+        List<SegmentFile> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (Segment.isSegmentFile(file)) {
+                    found.add(Segment.open(file));
+                } else if (CompressedSegment.isSegmentFile(file)) {
+                    found.add(CompressedSegment.open(file));
+                }
+            }
+        }
+        found.sort(Comparator.comparingLong(SegmentFile::seq).thenComparing(Comparator.comparingInt(SegmentFile::generation).reversed()));
+
+        List<SegmentFile> live = new ArrayList<>();
+        long coveredUpTo = 0;
+        for (SegmentFile segment : found) {
+            if (segment.seq() <= coveredUpTo) {
+                segment.delete();
+                continue;
+            }
+            live.add(segment);
+            coveredUpTo = segment.lastSeq();
+        }
+        for (int i = 0; i < live.size() - 1; i++) {
+            if (live.get(i) instanceof Segment segment && !segment.isSealed()) {
+                segment.seal();
+            }
+        }
+        return new SensorLog(directory, recordsPerSegment, blockWindowMicros, live);
+    }
+
+    void append(RecordBuffer records) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Segment active = !segments.isEmpty() && segments.get(segments.size() - 1) instanceof Segment last ? last : null;
+            long[] times = records.times();
+            int[] typeIds = records.typeIds();
+            double[] values = records.values();
+            for (int i = 0; i < records.size(); i++) {
+                while (active == null || !active.append(times[i], typeIds[i], values[i])) {
+                    if (active != null && !active.isSealed()) {
+                        active.commit();
+                        active.seal();
+                    }
+                    active = Segment.create(directory, nextSeq++, recordsPerSegment);
+                    segments.add(active);
+                }
+            }
+            active.commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scans records with {@code from <= time <= to} in storage order.
+     */
+    void scan(long from, long to, boolean[] wantedTypes, SegmentFile.RecordConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (SegmentFile segment : segments) {
+                segment.scan(from, to, wantedTypes, consumer);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Like {@link #scan}, but in time order. Segments overlap in time and are not all sorted, so
+     * the range is walked in slices of one block window (an hour when blocks are off): each slice
+     * is collected from every segment, sorted and handed on before the next is read. Memory
+     * grows with the matches of one slice, not of the whole range; the time index of each
+     * segment skips the parts outside the slice.
+     */
+    void scanInOrder(long from, long to, boolean[] wantedTypes, SegmentFile.RecordConsumer consumer) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        lock.readLock().lock();
+        try {
+            for (SegmentFile segment : segments) {
+                first = Math.min(first, segment.minTime());
+                last = Math.max(last, segment.maxTime());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long sliceMicros = blockWindowMicros > 0 ? blockWindowMicros : DEFAULT_SLICE_MICROS;
+        long end = Math.min(to, last);
+        for (long sliceStart = Math.max(from, first); sliceStart <= end; ) {
+            long sliceEnd = end - sliceStart < sliceMicros ? end : sliceStart + sliceMicros - 1;
+            RecordBuffer matches = new RecordBuffer();
+            scan(sliceStart, sliceEnd, wantedTypes, matches::add);
+            matches.sortByTime();
+            matches.forEach(consumer);
+            if (sliceEnd == end) {
+                break;
+            }
+            sliceStart = sliceEnd + 1;
+        }
+    }
+
+    /**
+     * Rewrites sealed segments that are out of order, hold records older than {@code cutoff}, are
+     * less than half full or not yet compressed into sorted (and compressed) segments of up to one
+     * segment's worth of records each.
+     * Sealed segments are immutable, so the rewrite happens outside the lock; only swapping the
+     * result in blocks appends. Returns the number of segments replaced.
+     */
+    int compact(long cutoff) throws IOException {
+        List<SegmentFile> sealed = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (SegmentFile segment : segments) {
+                if (segment.isSealed()) {
+                    sealed.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int replaced = 0;
+        List<SegmentFile> group = new ArrayList<>();
+        long groupRecords = 0;
+        for (SegmentFile segment : sealed) {
+            long records = segment.maxTime() < cutoff ? 0 : segment.count();
+            boolean candidate = needsRewrite(segment, cutoff) || segment.count() < recordsPerSegment / 2;
+            if (!candidate || groupRecords + records > recordsPerSegment) {
+                replaced += rewrite(group, cutoff);
+                group.clear();
+                groupRecords = 0;
+            }
+            if (candidate) {
+                group.add(segment);
+                groupRecords += records;
+            }
+        }
+        replaced += rewrite(group, cutoff);
+        return replaced;
+    }
+
+    void close() {
+        lock.writeLock().lock();
+        try {
+            for (SegmentFile segment : segments) {
+                if (segment instanceof Segment writable && !writable.isSealed()) {
+                    writable.commit();
+                    writable.force();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long readings() {
+        lock.readLock().lock();
+        try {
+            return segments.stream().mapToLong(SegmentFile::count).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean needsRewrite(SegmentFile segment, long cutoff) {
+        return !segment.isSorted() || segment.minTime() < cutoff || (blockWindowMicros > 0 && segment instanceof Segment);
+    }
+
+    private int rewrite(List<SegmentFile> group, long cutoff) throws IOException {
+        if (group.isEmpty() || (group.size() == 1 && !needsRewrite(group.get(0), cutoff))) {
+            return 0;
+        }
+        RecordBuffer records = new RecordBuffer(recordsPerSegment);
+        for (SegmentFile segment : group) {
+            segment.scan(cutoff, Long.MAX_VALUE, null, records::add);
+        }
+        records.sortByTime();
+
+        SegmentFile first = group.get(0);
+        SegmentFile last = group.get(group.size() - 1);
+        int generation = group.stream().mapToInt(SegmentFile::generation).max().getAsInt() + 1;
+        // Renaming the output into place is the commit point; its [seq, lastSeq] range marks the inputs as replaced.
+        SegmentFile replacement;
+        if (records.size() == 0) {
+            replacement = null;
+        } else if (blockWindowMicros > 0) {
+            replacement = CompressedSegment.write(directory, first.seq(), last.lastSeq(), generation, records, blockWindowMicros);
+        } else {
+            replacement = Segment.write(directory, first.seq(), last.lastSeq(), generation,
+                    records.times(), records.typeIds(), records.values(), records.size());
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<SegmentFile> updated = new ArrayList<>(segments.size());
+            for (SegmentFile segment : segments) {
+                if (segment == first && replacement != null) {
+                    updated.add(replacement);
+                } else if (!group.contains(segment)) {
+                    updated.add(segment);
+                }
+            }
+            segments = updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (SegmentFile segment : group) {
+            segment.delete();
+        }
+        return group.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.weather.statistics.storage.segment;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent, append-only mapping of metric type names to the small integer IDs stored in
+ * segment records. IDs start at 1 and are never reused; a torn last entry is dropped on load.
+ */
+final class TypeDictionary {
+
+    private final Path file;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile List<String> names = List.of();
+
+    private TypeDictionary(Path file) {
+        this.file = file;
+    }
+
+    static TypeDictionary open(Path file) throws IOException {
+        TypeDictionary dictionary = new TypeDictionary(file);
+        List<String> names = new ArrayList<>();
+        if (Files.exists(file)) {
+            byte[] content = Files.readAllBytes(file);
+            ByteArrayInputStream bytes = new ByteArrayInputStream(content);
+            DataInputStream input = new DataInputStream(bytes);
+            int valid = 0;
+            try {
+                while (bytes.available() > 0) {
+                    names.add(input.readUTF());
+                    valid = content.length - bytes.available();
+                }
+            } catch (EOFException e) {
+                // Torn entry from a crash mid-append; cut it off so later entries line up.
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+        }
+        for (int i = 0; i < names.size(); i++) {
+            dictionary.ids.put(names.get(i), i + 1);
+        }
+        dictionary.names = List.copyOf(names);
+        return dictionary;
+    }
+
+    /**
+     * The ID of {@code type}, or -1 if it has never been stored.
+     */
+    int find(String type) {
+        return ids.getOrDefault(type, -1);
+    }
+
+    int idOf(String type) throws IOException {
+        Integer id = ids.get(type);
+        return id != null ? id : register(type);
+    }
+
+    String name(int id) {
+        return names.get(id - 1);
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    private synchronized int register(String type) throws IOException {
+        Integer id = ids.get(type);
+        if (id != null) {
+            return id;
+        }
+        try (OutputStream stream = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                StandardOpenOption.DSYNC);
+             DataOutputStream output = new DataOutputStream(stream)) {
+            output.writeUTF(type);
+        }
+        List<String> updated = new ArrayList<>(names);
+        updated.add(type);
+        names = List.copyOf(updated);
+        ids.put(type, updated.size());
+        return updated.size();
+    }
+}
@@ -0,0 +1,139 @@
+package com.weather.statistics.subscription;
+
+import com.weather.statistics.aggregation.StatisticAccumulator;
+import com.weather.statistics.dto.LiveUpdateDto;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * One live subscriber: what it listens to, its emitter, and the readings received since its
+ * last event, folded into one pending update per (sensor, type).
+ */
+final class Subscription {
+
+    private final Set<Long> sensorIds;
+    private final Set<String> metrics;
+    private final SseEmitter emitter;
+    private Map<SeriesKey, PendingUpdate> pending = new LinkedHashMap<>();
+    private volatile boolean sending;
+    private volatile boolean writing;
+    private volatile long writeStarted;
+    private volatile long lastSent;
+    private volatile Future<?> send;
+
+    Subscription(Set<Long> sensorIds, Set<String> metrics, SseEmitter emitter, long now) {
+        this.sensorIds = sensorIds;
+        this.metrics = metrics;
+        this.emitter = emitter;
+        this.lastSent = now;
+    }
+
+    Set<Long> sensorIds() {
+        return sensorIds;
+    }
+
+    SseEmitter emitter() {
+        return emitter;
+    }
+
+    /**
+     * Folds a reading of one of this subscriber's sensors into its pending update; returns
+     * false if the subscriber does not listen to its type.
+     */
+    synchronized boolean offer(Long sensorId, String type, LocalDateTime recordedTime, double value) {
+        if (!metrics.contains(type)) {
+            return false;
+        }
+        pending.computeIfAbsent(new SeriesKey(sensorId, type), key -> new PendingUpdate()).add(recordedTime, value);
+        return true;
+    }
+
+    synchronized List<LiveUpdateDto> drain() {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<LiveUpdateDto> updates = new ArrayList<>(pending.size());
+        pending.forEach((key, update) -> updates.add(new LiveUpdateDto(key.sensorId(), key.type(), update.latestValue,
+                update.latestTime, update.accumulator.getCount(), update.accumulator.getMin(), update.accumulator.getMax(),
+                update.accumulator.getAverage())));
+        pending = new LinkedHashMap<>();
+        return updates;
+    }
+
+    /**
+     * True from the moment an event is handed to a sender until it has been written, including
+     * the time it waits for a free sender.
+     */
+    boolean isSending() {
+        return sending;
+    }
+
+    /**
+     * True while the event is actually being written to the client.
+     */
+    boolean isWriting() {
+        return writing;
+    }
+
+    long writeStarted() {
+        return writeStarted;
+    }
+
+    long lastSent() {
+        return lastSent;
+    }
+
+    void startSending() {
+        sending = true;
+    }
+
+    void sendQueued(Future<?> send) {
+        this.send = send;
+    }
+
+    void startWriting(long now) {
+        writeStarted = now;
+        writing = true;
+    }
+
+    void finishSending(long now) {
+        lastSent = now;
+        writing = false;
+        sending = false;
+    }
+
+    /**
+     * Interrupts the sender writing this subscriber's event, so a client that stopped reading
+     * does not keep a sender thread.
+     */
+    void cancelSend() {
+        Future<?> current = send;
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    private record SeriesKey(Long sensorId, String type) {
+    }
+
+    private static final class PendingUpdate {
+        private final StatisticAccumulator accumulator = new StatisticAccumulator();
+        private LocalDateTime latestTime;
+        private double latestValue;
+
+        void add(LocalDateTime recordedTime, double value) {
+            accumulator.add(value);
+            if (latestTime == null || !recordedTime.isBefore(latestTime)) {
+                latestTime = recordedTime;
+                latestValue = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.weather.statistics.subscription;
+
+import com.weather.statistics.cache.SensorInfo;
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.dto.LiveUpdateDto;
+import com.weather.statistics.dto.SubscriptionStatsDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.exception.SomeSensorsNotFoundException;
+import com.weather.statistics.exception.SubscriberLimitException;
+import com.weather.statistics.ingest.MetricsWrittenEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fan-out of committed readings to the live subscribers of {@code GET /weather/subscribe}, sent
+ * as server-sent events. No thread is held per subscriber: a committed write folds each reading
+ * into the pending update of every subscriber of its sensor and type, and one flusher thread
+ * hands each subscriber with pending updates a single event per flush interval to a small pool
+ * of sender threads. Updates are coalesced per (sensor, type), so what a subscriber has pending
+ * is bounded by what it subscribed to, not by the ingestion rate.
+ * <p>
+ * A subscriber whose previous event is still waiting for a sender or being written is skipped and
+ * keeps accumulating. Time spent waiting for a sender does not count against it; one whose write
+ * has taken longer than {@code weather.subscribe.max-lag} is dropped, its write is interrupted so
+ * the sender is free for others, and it is expected to reconnect and reload its statistics.
+ */
+@Component
+public class SubscriptionHub {
+
+    public static final String UPDATE_EVENT = "readings";
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionHub.class);
+
+    private final SensorRegistry sensorRegistry;
+    private final int maxSubscribers;
+    private final int maxSeries;
+    private final long timeoutMillis;
+    private final long flushIntervalMillis;
+    private final long heartbeatNanos;
+    private final long maxLagNanos;
+    private final int senders;
+    private final long retryAfterSeconds;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<Subscription>> subscriptionsBySensor = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final AtomicLong readingsQueued = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private ScheduledExecutorService flusher;
+    private ExecutorService senderPool;
+
+    public SubscriptionHub(SensorRegistry sensorRegistry,
+                           @Value("${weather.subscribe.max-subscribers:10000}") int maxSubscribers,
+                           @Value("${weather.subscribe.max-series:1000}") int maxSeries,
+                           @Value("${weather.subscribe.timeout:PT1H}") Duration timeout,
+                           @Value("${weather.subscribe.flush-interval:PT1S}") Duration flushInterval,
+                           @Value("${weather.subscribe.heartbeat:PT15S}") Duration heartbeat,
+                           @Value("${weather.subscribe.max-lag:PT30S}") Duration maxLag,
+                           @Value("${weather.subscribe.senders:4}") int senders,
+                           @Value("${weather.subscribe.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.sensorRegistry = sensorRegistry;
+        this.maxSubscribers = maxSubscribers;
+        this.maxSeries = maxSeries;
+        this.timeoutMillis = timeout.toMillis();
+        this.flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.maxLagNanos = maxLag.toNanos();
+        this.senders = senders;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "subscription-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // With no sender threads the flusher writes the events itself.
+        if (senders > 0) {
+            AtomicInteger threads = new AtomicInteger();
+            senderPool = Executors.newFixedThreadPool(senders, runnable -> {
+                Thread thread = new Thread(runnable, "subscription-sender-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (senderPool != null) {
+            senderPool.shutdownNow();
+        }
+        for (Subscription subscription : List.copyOf(subscriptions)) {
+            remove(subscription);
+            subscription.emitter().complete();
+        }
+    }
+
+    public SseEmitter subscribe(List<Long> sensorIds, List<String> metrics) {
+        return subscribe(sensorIds, metrics, new SseEmitter(timeoutMillis));
+    }
+
+    /**
+     * Registers {@code emitter} for the readings of {@code sensorIds} and {@code metrics}.
+     */
+    public SseEmitter subscribe(List<Long> sensorIds, List<String> metrics, SseEmitter emitter) {
+        Set<Long> sensors = new LinkedHashSet<>(sensorIds);
+        Set<String> types = new LinkedHashSet<>(metrics);
+        if (sensors.isEmpty() || types.isEmpty()) {
+            throw new IllegalStateException("At least one sensor ID and one metric are required");
+        }
+        if ((long) sensors.size() * types.size() > maxSeries) {
+            throw new IllegalStateException("A subscription covers at most " + maxSeries + " sensor and metric pairs");
+        }
+        Map<Long, SensorInfo> found = sensorRegistry.findAll(sensors);
+        List<Long> missingSensorIds = sensors.stream().filter(sensorId -> !found.containsKey(sensorId)).toList();
+        if (!missingSensorIds.isEmpty()) {
+            throw new SomeSensorsNotFoundException("Sensors not found for IDs: " + missingSensorIds);
+        }
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new SubscriberLimitException("Too many live subscribers, retry later", retryAfterSeconds);
+        }
+
+        Subscription subscription = new Subscription(sensors, types, emitter, System.nanoTime());
+        subscriptions.add(subscription);
+        for (Long sensorId : sensors) {
+            subscriptionsBySensor.compute(sensorId, (id, sensorSubscriptions) -> {
+                Set<Subscription> updated = sensorSubscriptions == null ? ConcurrentHashMap.newKeySet() : sensorSubscriptions;
+                updated.add(subscription);
+                return updated;
+            });
+        }
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onError(e -> remove(subscription));
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void onMetricsWritten(MetricsWrittenEvent event) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        for (Metric metric : event.metrics()) {
+            Set<Subscription> sensorSubscriptions = subscriptionsBySensor.get(metric.getSensor().getSensorId());
+            if (sensorSubscriptions == null || metric.getData() == null) {
+                continue;
+            }
+            for (Subscription subscription : sensorSubscriptions) {
+                if (subscription.offer(metric.getSensor().getSensorId(), metric.getType(), metric.getRecordedTime(), metric.getData())) {
+                    readingsQueued.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends every idle subscriber its pending updates, or a heartbeat if it has had nothing for a while.
+     */
+    public void flush() {
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.isSending()) {
+                // The emitter is completed by the sender once the interrupted write returns; completing
+                // it here would wait on the stuck write.
+                if (subscription.isWriting() && now - subscription.writeStarted() > maxLagNanos && remove(subscription)) {
+                    dropped.incrementAndGet();
+                    subscription.cancelSend();
+                }
+                continue;
+            }
+            List<LiveUpdateDto> updates = subscription.drain();
+            if (updates.isEmpty() && now - subscription.lastSent() < heartbeatNanos) {
+                continue;
+            }
+            subscription.startSending();
+            if (senderPool == null) {
+                send(subscription, updates);
+                continue;
+            }
+            try {
+                subscription.sendQueued(senderPool.submit(() -> send(subscription, updates)));
+            } catch (RejectedExecutionException e) {
+                // The sender pool is shutting down, so nothing will ever send to it again; drop it
+                // rather than leave it marked as sending.
+                subscription.finishSending(subscription.lastSent());
+                if (remove(subscription)) {
+                    dropped.incrementAndGet();
+                }
+                subscription.emitter().complete();
+            }
+        }
+    }
+
+    public SubscriptionStatsDto stats() {
+        return new SubscriptionStatsDto(subscribers.get(), maxSubscribers, readingsQueued.get(), eventsSent.get(), dropped.get());
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Live subscription flush failed", e);
+        }
+    }
+
+    private void send(Subscription subscription, List<LiveUpdateDto> updates) {
+        subscription.startWriting(System.nanoTime());
+        try {
+            if (updates.isEmpty()) {
+                subscription.emitter().send(SseEmitter.event().comment("heartbeat"));
+            } else {
+                subscription.emitter().send(SseEmitter.event().name(UPDATE_EVENT).data(updates));
+                eventsSent.incrementAndGet();
+            }
+            subscription.finishSending(System.nanoTime());
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, the write was interrupted or the emitter has already completed.
+            remove(subscription);
+        }
+        if (!subscriptions.contains(subscription)) {
+            subscription.emitter().complete();
+        }
+    }
+
+    private boolean remove(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return false;
+        }
+        subscribers.decrementAndGet();
+        for (Long sensorId : subscription.sensorIds()) {
+            subscriptionsBySensor.computeIfPresent(sensorId, (id, sensorSubscriptions) -> {
+                sensorSubscriptions.remove(subscription);
+                return sensorSubscriptions.isEmpty() ? null : sensorSubscriptions;
+            });
+        }
+        return true;
+    }
+}
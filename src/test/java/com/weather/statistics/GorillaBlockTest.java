@@ -0,0 +1,58 @@
+package com.weather.statistics;
+
+import com.weather.statistics.storage.compression.GorillaBlock;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GorillaBlockTest {
+
+    @Test
+    void roundTripsIrregularTimesAndSpecialValues() {
+        long[] times = {1_700_000_000_000_000L, 1_700_000_000_000_000L, 1_700_000_060_000_000L, 1_700_000_059_999_999L,
+                1_700_000_120_000_000L, Long.MAX_VALUE / 2, -5L};
+        double[] values = {21.5, 21.5, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, -1e300};
+
+        List<Long> decodedTimes = new ArrayList<>();
+        List<Double> decodedValues = new ArrayList<>();
+        GorillaBlock.decode(GorillaBlock.encode(times, values, times.length), (time, value) -> {
+            decodedTimes.add(time);
+            decodedValues.add(value);
+        });
+
+        assertEquals(times.length, decodedTimes.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], decodedTimes.get(i));
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues.get(i)));
+        }
+    }
+
+    @Test
+    void compressesRegularSlowlyChangingReadings() {
+        int count = 3600;
+        long[] times = new long[count];
+        double[] values = new double[count];
+        Random random = new Random(42);
+        double temperature = 18.0;
+        for (int i = 0; i < count; i++) {
+            times[i] = 1_700_000_000_000_000L + i * 1_000_000L;
+            temperature += random.nextInt(3) - 1;
+            values[i] = temperature / 2;
+        }
+
+        byte[] block = GorillaBlock.encode(times, values, count);
+
+        assertTrue(block.length < count * 3, "expected under 3 bytes per reading, got " + (double) block.length / count);
+        int[] decoded = {0};
+        GorillaBlock.decode(block, (time, value) -> {
+            assertEquals(times[decoded[0]], time);
+            assertEquals(values[decoded[0]], value);
+            decoded[0]++;
+        });
+        assertEquals(count, decoded[0]);
+    }
+}
@@ -0,0 +1,115 @@
+package com.weather.statistics;
+
+import com.weather.statistics.aggregation.StatisticAccumulator;
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.MetricType;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.MetricsWrittenEvent;
+import com.weather.statistics.repository.MetricTypeRepository;
+import com.weather.statistics.storage.ReadingStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HotStoreTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Mock
+    private ReadingStore readingStore;
+    @Mock
+    private MetricTypeRepository metricTypeRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HotStore hotStore;
+
+    @BeforeEach
+    void setup() {
+        when(metricTypeRepository.findAll())
+                .thenReturn(List.of(new MetricType(1, "temperature"), new MetricType(2, "humidity")));
+        MetricTypeRegistry metricTypeRegistry = new MetricTypeRegistry(metricTypeRepository, transactionManager, Duration.ofSeconds(10));
+        metricTypeRegistry.load();
+        hotStore = new HotStore(readingStore, metricTypeRegistry, true, Duration.ofDays(7));
+        doAnswer(invocation -> {
+            Consumer<MetricReadingDto> consumer = invocation.getArgument(1);
+            consumer.accept(new MetricReadingDto(1001L, "temperature", 10.0, NOW.minusDays(2)));
+            consumer.accept(new MetricReadingDto(1001L, "temperature", 20.0, NOW.minusDays(1)));
+            consumer.accept(new MetricReadingDto(1002L, "temperature", 5.0, NOW.minusDays(1)));
+            return null;
+        }).when(readingStore).forEachReadingSince(any(), any());
+    }
+
+    @Test
+    void answersOnlyRangesInsideTheRetentionWindowAfterWarmUp() {
+        assertFalse(hotStore.covers(NOW.minusDays(1)));
+        hotStore.warmUp();
+
+        assertTrue(hotStore.covers(NOW.minusDays(6)));
+        assertFalse(hotStore.covers(NOW.minusDays(8)));
+        assertEquals(3, hotStore.stats().getSize());
+    }
+
+    @Test
+    void aggregatesWarmedAndWrittenReadingsWithInclusiveBounds() {
+        hotStore.warmUp();
+        Sensor sensor = new Sensor(1L, 1001L, "London", List.of(), NOW);
+        hotStore.onMetricsWritten(new MetricsWrittenEvent(List.of(
+                new Metric(1L, "temperature", 30.0, sensor, NOW, null),
+                new Metric(2L, "humidity", 70.0, sensor, NOW, null))));
+
+        StatisticAccumulator temperature = hotStore.aggregate(List.of(1001L), List.of("temperature"), NOW.minusDays(1), NOW, true)
+                .getGroups().get(1001L).get("temperature");
+
+        assertEquals(2, temperature.getCount());
+        assertEquals(50.0, temperature.getSum());
+        assertEquals(30.0, temperature.getQuantile(1.0), 0.3);
+        assertTrue(hotStore.aggregate(List.of(1003L), List.of("temperature"), NOW.minusDays(7), NOW, false).getGroups().isEmpty());
+    }
+
+    @Test
+    void chunksStartSmallAndGrowWithTheirSeries() {
+        hotStore.warmUp();
+        // Two series of a few readings each hold one 64-slot chunk apiece.
+        assertEquals(2 * 64 * 16, hotStore.stats().getMemoryBytes());
+
+        Sensor sensor = new Sensor(1L, 1001L, "London", List.of(), NOW);
+        hotStore.onMetricsWritten(new MetricsWrittenEvent(IntStream.range(0, 100)
+                .mapToObj(i -> new Metric((long) i, "temperature", (double) i, sensor, NOW.minusSeconds(100 - i), null))
+                .toList()));
+
+        assertEquals((128 + 64) * 16, hotStore.stats().getMemoryBytes());
+        assertEquals(102, hotStore.aggregate(List.of(1001L), List.of("temperature"), NOW.minusDays(7), NOW, false)
+                .getGroups().get(1001L).get("temperature").getCount());
+    }
+
+    @Test
+    void bucketsSeriesFromStoredTimestamps() {
+        hotStore.warmUp();
+
+        var series = hotStore.series(List.of(1001L), List.of("temperature"), NOW.minusDays(3), NOW, Duration.ofDays(1), false)
+                .getGroups().get(1001L).get("temperature");
+
+        assertEquals(List.of(NOW.minusDays(2).truncatedTo(ChronoUnit.DAYS), NOW.minusDays(1).truncatedTo(ChronoUnit.DAYS)),
+                List.copyOf(series.keySet()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.weather.statistics;
+
+import com.weather.statistics.dto.BatchRequestDto;
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.RequestDto;
+import com.weather.statistics.dto.ResponseDto;
+import com.weather.statistics.dto.SensorBatchResultDto;
+import com.weather.statistics.exception.IngestQueueFullException;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.ingest.IngestQueue;
+import com.weather.statistics.ingest.ReadingBatch;
+import com.weather.statistics.ingest.ReadingValidator;
+import com.weather.statistics.metrics.WeatherMetrics;
+import com.weather.statistics.service.WeatherService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestQueueTest {
+
+    @Mock
+    private WeatherService weatherService;
+
+    private final ReadingValidator readingValidator = new ReadingValidator(
+            new WeatherMetrics(new SimpleMeterRegistry(), false, Duration.ofSeconds(1), 1.0), Duration.ofHours(24), Duration.ofMinutes(1));
+
+    @Test
+    void submit_rejectsWhenFull() {
+        IngestQueue ingestQueue = new IngestQueue(weatherService, readingValidator, true, 2, 0, 10, 3, false);
+        ingestQueue.start();
+
+        ingestQueue.submit(new RequestDto(1001L, "London", List.of(new MetricDto("temperature", 1.0, null))));
+        IngestQueueFullException ex = assertThrows(IngestQueueFullException.class, () -> ingestQueue.submit(
+                new RequestDto(1001L, "London", List.of(new MetricDto("temperature", 2.0, null), new MetricDto("temperature", 3.0, null)))));
+
+        assertEquals(3, ex.getRetryAfterSeconds());
+        assertEquals(1, ingestQueue.stats().getDepth());
+    }
+
+    @Test
+    void submit_rejectsInvalidReadingsBeforeQueueing() {
+        IngestQueue ingestQueue = new IngestQueue(weatherService, readingValidator, true, 10, 0, 10, 1, false);
+        ingestQueue.start();
+
+        assertThrows(IllegalStateException.class, () -> ingestQueue.submit(new RequestDto(1001L, "London",
+                List.of(new MetricDto("temperature", 1.0, null), new MetricDto("humidity", null, null)))));
+
+        assertEquals(0, ingestQueue.stats().getDepth());
+    }
+
+    @Test
+    void submit_queuesBinaryReadingsWhole() throws Exception {
+        when(weatherService.sensorData(any(ReadingBatch.class))).thenReturn(new ResponseDto("200", "Sensor already exists, metrics updated",
+                new Sensor(1L, 1001L, "London", List.of(new Metric(), new Metric()), LocalDateTime.now())));
+        ReadingBatch readings = ReadingBatch.from(new RequestDto(1001L, "London",
+                List.of(new MetricDto("temperature", 1.0, null), new MetricDto("humidity", 40.0, null))));
+        IngestQueue parked = new IngestQueue(weatherService, readingValidator, true, 3, 0, 10, 1, false);
+        parked.start();
+
+        assertEquals(2, parked.submit(readings).getData());
+        assertEquals(2, parked.stats().getDepth());
+        assertThrows(IngestQueueFullException.class, () -> parked.submit(readings));
+
+        IngestQueue ingestQueue = new IngestQueue(weatherService, readingValidator, true, 3, 1, 10, 1, false);
+        ingestQueue.start();
+        ingestQueue.submit(readings);
+        ingestQueue.shutdown();
+
+        verify(weatherService).sensorData(readings);
+        verify(weatherService, never()).batchSensorData(any(BatchRequestDto.class));
+        assertEquals(2, ingestQueue.stats().getDrained());
+        assertEquals(0, ingestQueue.stats().getDepth());
+    }
+
+    @Test
+    void shutdown_flushesQueuedReadingsInBatches() throws Exception {
+        when(weatherService.batchSensorData(any(BatchRequestDto.class)))
+                .thenReturn(new ResponseDto("200", "Batch processed", List.of(new SensorBatchResultDto(1001L, 2, 0, null))));
+        IngestQueue ingestQueue = new IngestQueue(weatherService, readingValidator, true, 100, 1, 10, 1, false);
+        ingestQueue.start();
+
+        ResponseDto response = ingestQueue.submit(new RequestDto(1001L, "London",
+                List.of(new MetricDto("temperature", 1.0, null), new MetricDto("humidity", 40.0, null))));
+        ingestQueue.shutdown();
+
+        assertEquals("202", response.getStatus());
+        ArgumentCaptor<BatchRequestDto> captor = ArgumentCaptor.forClass(BatchRequestDto.class);
+        verify(weatherService, atLeastOnce()).batchSensorData(captor.capture());
+        assertEquals(2, captor.getAllValues().stream()
+                .flatMap(batch -> batch.getSensorList().stream())
+                .mapToInt(request -> request.getMetricList().size())
+                .sum());
+        assertEquals(2, ingestQueue.stats().getDrained());
+        assertThrows(IngestQueueFullException.class, () -> ingestQueue.submit(
+                new RequestDto(1001L, "London", List.of(new MetricDto("temperature", 1.0, null)))));
+    }
+}
@@ -0,0 +1,40 @@
+package com.weather.statistics;
+
+import com.weather.statistics.aggregation.LargestTriangleThreeBuckets;
+import com.weather.statistics.dto.SeriesPointDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LargestTriangleThreeBucketsTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Test
+    void keepsEndpointsAndPeaks() {
+        List<SeriesPointDto> points = IntStream.range(0, 1000)
+                .mapToObj(i -> new SeriesPointDto(START.plusMinutes(i), i == 500 ? 100.0 : Math.sin(i / 50.0)))
+                .collect(Collectors.toList());
+
+        List<SeriesPointDto> sampled = LargestTriangleThreeBuckets.downsample(points, 50);
+
+        assertEquals(50, sampled.size());
+        assertEquals(points.get(0), sampled.get(0));
+        assertEquals(points.get(999), sampled.get(49));
+        assertTrue(sampled.contains(points.get(500)));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i).getTime().isAfter(sampled.get(i - 1).getTime()));
+        }
+    }
+
+    @Test
+    void leavesShortSeriesUntouched() {
+        List<SeriesPointDto> points = List.of(new SeriesPointDto(START, 1.0), new SeriesPointDto(START.plusHours(1), 2.0));
+        assertSame(points, LargestTriangleThreeBuckets.downsample(points, 10));
+    }
+}
@@ -0,0 +1,70 @@
+package com.weather.statistics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.query.ExportFormat;
+import com.weather.statistics.query.MetricExporter;
+import com.weather.statistics.storage.ReadingStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class MetricExporterTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2025, 1, 30, 12, 0);
+
+    @Mock
+    private ReadingStore readingStore;
+
+    private MetricExporter metricExporter;
+
+    @BeforeEach
+    void setup() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        metricExporter = new MetricExporter(readingStore, objectMapper);
+        doAnswer(invocation -> {
+            Consumer<MetricReadingDto> consumer = invocation.getArgument(4);
+            consumer.accept(new MetricReadingDto(1001L, "Temperature", 22.5, TIME));
+            consumer.accept(new MetricReadingDto(1001L, "Wind, gusts", 40.0, TIME.plusMinutes(1)));
+            return null;
+        }).when(readingStore).forEachReadingInOrder(anyList(), anyList(), any(), any(), any());
+    }
+
+    @Test
+    void writesOneJsonObjectPerLine() throws Exception {
+        assertEquals("{\"sensorId\":1001,\"type\":\"Temperature\",\"data\":22.5,\"recordedTime\":\"2025-01-30T12:00:00\"}\n"
+                        + "{\"sensorId\":1001,\"type\":\"Wind, gusts\",\"data\":40.0,\"recordedTime\":\"2025-01-30T12:01:00\"}\n",
+                export(ExportFormat.NDJSON));
+    }
+
+    @Test
+    void writesCsvWithHeaderAndQuotedFields() throws Exception {
+        assertEquals("sensorId,type,data,recordedTime\n"
+                        + "1001,Temperature,22.5,2025-01-30T12:00:00\n"
+                        + "1001,\"Wind, gusts\",40.0,2025-01-30T12:01:00\n",
+                export(ExportFormat.CSV));
+    }
+
+    private String export(ExportFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metricExporter.export(List.of(1001L), List.of("Temperature"), TIME.minusDays(1), TIME, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
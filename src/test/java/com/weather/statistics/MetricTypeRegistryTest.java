@@ -0,0 +1,99 @@
+package com.weather.statistics;
+
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.entity.MetricType;
+import com.weather.statistics.repository.MetricTypeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MetricTypeRegistryTest {
+
+    @Mock
+    private MetricTypeRepository metricTypeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MetricTypeRegistry registry;
+
+    @BeforeEach
+    void setup() {
+        when(metricTypeRepository.findAll()).thenReturn(List.of(new MetricType(1, "temperature")));
+        registry = new MetricTypeRegistry(metricTypeRepository, transactionManager, Duration.ofMinutes(1));
+        registry.load();
+    }
+
+    @Test
+    void registersUnknownTypesOnceAndTranslatesBothWays() {
+        when(metricTypeRepository.save(any(MetricType.class))).thenReturn(new MetricType(2, "humidity"));
+
+        registry.register(Arrays.asList("temperature", "humidity", null));
+        registry.register(List.of("humidity"));
+
+        verify(metricTypeRepository, times(1)).save(any(MetricType.class));
+        assertEquals(1, registry.idOf("temperature"));
+        assertEquals(2, registry.idOf("humidity"));
+        assertEquals("humidity", registry.nameOf(2));
+        assertEquals(MetricTypeRegistry.UNKNOWN_ID, registry.idOf("wind"));
+        assertNull(registry.nameOf(MetricTypeRegistry.UNKNOWN_ID));
+    }
+
+    @Test
+    void staleRegistryLoadsTypesAddedByOtherInstances() {
+        when(metricTypeRepository.findByName("pressure")).thenReturn(Optional.of(new MetricType(3, "pressure")));
+        when(metricTypeRepository.findById(4)).thenReturn(Optional.of(new MetricType(4, "wind")));
+
+        assertEquals(3, registry.idOf("pressure"));
+        assertEquals("pressure", registry.nameOf(3));
+        assertEquals("wind", registry.nameOf(4));
+        assertEquals(4, registry.idOf("wind"));
+        assertEquals(MetricTypeRegistry.UNKNOWN_ID, registry.idOf("snow"));
+
+        verify(metricTypeRepository, times(1)).findByName("pressure");
+        verify(metricTypeRepository, times(1)).findById(4);
+        verify(metricTypeRepository, never()).findByName("wind");
+    }
+
+    @Test
+    void unknownNamesAreRememberedUntilRegistered() {
+        when(metricTypeRepository.findByName("snow")).thenReturn(Optional.empty());
+        when(metricTypeRepository.save(any(MetricType.class))).thenReturn(new MetricType(5, "snow"));
+
+        assertEquals(MetricTypeRegistry.UNKNOWN_ID, registry.idOf("snow"));
+        assertEquals(MetricTypeRegistry.UNKNOWN_ID, registry.idOf("snow"));
+        verify(metricTypeRepository, times(1)).findByName("snow");
+
+        registry.register(List.of("snow"));
+
+        assertEquals(5, registry.idOf("snow"));
+    }
+
+    @Test
+    void concurrentRegistrationFallsBackToTheStoredRow() {
+        when(metricTypeRepository.save(any(MetricType.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(metricTypeRepository.findByName("wind")).thenReturn(Optional.of(new MetricType(7, "wind")));
+
+        registry.register(List.of("wind"));
+
+        assertEquals(7, registry.idOf("wind"));
+    }
+}
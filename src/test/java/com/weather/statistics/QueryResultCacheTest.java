@@ -0,0 +1,162 @@
+package com.weather.statistics;
+
+import com.weather.statistics.cache.QueryKey;
+import com.weather.statistics.cache.QueryResultCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryResultCacheTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0, 10);
+    private static final LocalDateTime END = LocalDateTime.of(2025, 1, 8, 0, 0, 40);
+
+    private QueryResultCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setup() {
+        cache = new QueryResultCache(true, 100, Duration.ofMinutes(5), Duration.ofMinutes(1));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void equivalentQueriesShareOneEntry() {
+        QueryKey first = cache.key(List.of(2L, 1L), List.of("Humidity", "Temperature"), "AVERAGE", START, END);
+        QueryKey second = cache.key(List.of(1L, 2L, 1L), List.of("Temperature", "Humidity"), "average", START, END);
+
+        assertEquals(first, second);
+        cache.get(first, this::load);
+        cache.get(second, this::load);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getHitCount());
+    }
+
+    @Test
+    void explicitRangesAreKeptExactly() {
+        QueryKey key = cache.key(List.of(1L), List.of("Temperature"), "sum", START, END);
+        QueryKey later = cache.key(List.of(1L), List.of("Temperature"), "sum", START.plusSeconds(20), END);
+
+        assertEquals(START, key.startDate());
+        assertEquals(END, key.endDate());
+        assertNotEquals(key, later);
+        cache.get(key, this::load);
+        cache.get(later, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void defaultWindowEndIsRoundedUpToTheGranularity() {
+        assertEquals(LocalDateTime.of(2025, 1, 8, 0, 1), cache.defaultWindowEnd(END));
+        assertEquals(LocalDateTime.of(2025, 1, 8, 0, 1), cache.defaultWindowEnd(LocalDateTime.of(2025, 1, 8, 0, 1)));
+        assertEquals(END, new QueryResultCache(true, 100, Duration.ofMinutes(5), Duration.ZERO).defaultWindowEnd(END));
+    }
+
+    @Test
+    void sensorsAreNoLongerTrackedOnceTheirEntriesAreGone() {
+        QueryKey key = cache.key(List.of(1L, 2L), List.of("Temperature"), "sum", START, END);
+        cache.get(key, this::load);
+        assertEquals(2, cache.trackedSensors());
+
+        cache.invalidate(1L, START, START);
+        assertEquals(0, cache.trackedSensors());
+
+        assertThrows(IllegalStateException.class, () -> cache.get(key, () -> {
+            throw new IllegalStateException("query failed");
+        }));
+        assertEquals(0, cache.trackedSensors());
+    }
+
+    @Test
+    void readingsOnlyEvictOverlappingEntriesOfTheirSensor() {
+        QueryKey sensorOne = cache.key(List.of(1L), List.of("Temperature"), "sum", START, END);
+        QueryKey sensorTwo = cache.key(List.of(2L), List.of("Temperature"), "sum", START, END);
+        cache.get(sensorOne, this::load);
+        cache.get(sensorTwo, this::load);
+
+        cache.invalidate(1L, END.plusDays(1), END.plusDays(1));
+        cache.get(sensorOne, this::load);
+        assertEquals(2, loads.get());
+
+        cache.invalidate(1L, START.plusDays(1), START.plusDays(1));
+        cache.get(sensorOne, this::load);
+        cache.get(sensorTwo, this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void resultRacingAnInvalidationIsNotCached() {
+        QueryKey key = cache.key(List.of(1L), List.of("Temperature"), "sum", START, END);
+
+        cache.get(key, () -> {
+            cache.invalidate(1L, START, START);
+            return load();
+        });
+        cache.get(key, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void reloadingAKeyWhileItIsInvalidatedKeepsItIndexed() throws Exception {
+        QueryKey key = cache.key(List.of(1L), List.of("Temperature"), "sum", START, END);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 200; round++) {
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<?>> tasks = List.of(
+                        executor.submit(() -> {
+                            go.await();
+                            for (int i = 0; i < 50; i++) {
+                                cache.get(key, this::load);
+                            }
+                            return null;
+                        }),
+                        executor.submit(() -> {
+                            go.await();
+                            for (int i = 0; i < 50; i++) {
+                                cache.get(key, this::load);
+                            }
+                            return null;
+                        }),
+                        executor.submit(() -> {
+                            go.await();
+                            for (int i = 0; i < 50; i++) {
+                                cache.invalidate(1L, START, START);
+                            }
+                            return null;
+                        }));
+                go.countDown();
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+
+                // Whatever is cached now must still be reachable by an invalidation.
+                cache.invalidate(1L, START, START);
+                int before = loads.get();
+                cache.get(key, this::load);
+                assertEquals(before + 1, loads.get(), "stale entry survived invalidation in round " + round);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<Long, Map<String, Double>> load() {
+        loads.incrementAndGet();
+        return Map.of(1L, Map.of("Temperature", 20.0));
+    }
+}
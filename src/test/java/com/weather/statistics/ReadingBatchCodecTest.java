@@ -0,0 +1,79 @@
+package com.weather.statistics;
+
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.RequestDto;
+import com.weather.statistics.ingest.ReadingBatch;
+import com.weather.statistics.ingest.ReadingBatchCodec;
+import com.weather.statistics.ingest.ReadingBatchMessageConverter;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadingBatchCodecTest {
+
+    private static final LocalDateTime RECORDED = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Test
+    void roundTripsReadings() {
+        RequestDto request = new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.5, RECORDED),
+                new MetricDto("humidity", 61.0, RECORDED),
+                new MetricDto("temperature", 21.0, null)));
+
+        byte[] message = ReadingBatchCodec.encode(ReadingBatch.from(request));
+        ReadingBatch readings = ReadingBatchCodec.decode(message);
+
+        assertEquals(1 + 8 + 2 + 6 + 1 + 12 + 9 + 4 + 3 * 17, message.length);
+        assertEquals(1001L, readings.getSensorId());
+        assertEquals("London", readings.getLocation());
+        assertEquals(3, readings.size());
+        assertEquals("humidity", readings.getType(1));
+        assertEquals(RECORDED, readings.getRecordedTime(0));
+        assertNull(readings.getRecordedTime(2));
+        assertEquals(21.0, readings.getValue(2));
+        assertEquals(request.getMetricList(), readings.toRequestDto().getMetricList());
+    }
+
+    @Test
+    void converterWritesTheBinaryFormat() throws Exception {
+        ReadingBatch readings = ReadingBatch.from(new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.5, RECORDED))));
+        ReadingBatchMessageConverter converter = new ReadingBatchMessageConverter();
+        MediaType mediaType = MediaType.parseMediaType(ReadingBatchCodec.MEDIA_TYPE);
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        assertTrue(converter.canWrite(ReadingBatch.class, mediaType));
+        converter.write(readings, mediaType, outputMessage);
+
+        assertArrayEquals(ReadingBatchCodec.encode(readings), outputMessage.getBodyAsBytes());
+        assertEquals(mediaType, outputMessage.getHeaders().getContentType());
+    }
+
+    @Test
+    void rejectsMalformedMessages() {
+        byte[] message = ReadingBatchCodec.encode(ReadingBatch.from(new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.5, RECORDED)))));
+
+        byte[] truncated = Arrays.copyOf(message, message.length - 1);
+        byte[] badVersion = message.clone();
+        badVersion[0] = 2;
+        byte[] badTypeIndex = message.clone();
+        badTypeIndex[message.length - 17] = 1;
+
+        assertThrows(IllegalArgumentException.class, () -> ReadingBatchCodec.decode(truncated));
+        assertThrows(IllegalArgumentException.class, () -> ReadingBatchCodec.decode(badVersion));
+        assertThrows(IllegalArgumentException.class, () -> ReadingBatchCodec.decode(badTypeIndex));
+        assertThrows(IllegalArgumentException.class, () -> ReadingBatchCodec.decode(new byte[0]));
+    }
+}
@@ -0,0 +1,35 @@
+package com.weather.statistics;
+
+import com.weather.statistics.ingest.ReadingKeyFilter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadingKeyFilterTest {
+
+    @Test
+    void remembersKeysPerSensor() {
+        ReadingKeyFilter filter = new ReadingKeyFilter(2, 100, Duration.ofHours(1));
+
+        filter.addAll(1001L, List.of("a", "b", "c"));
+
+        assertFalse(filter.contains(1001L, "a"));
+        assertTrue(filter.contains(1001L, "c"));
+        assertFalse(filter.contains(1002L, "c"));
+    }
+
+    @Test
+    void boundsKeysAcrossAllSensors() {
+        ReadingKeyFilter filter = new ReadingKeyFilter(10, 50, Duration.ofHours(1));
+
+        IntStream.range(0, 1000).forEach(sensor -> filter.addAll((long) sensor,
+                IntStream.range(0, 5).mapToObj(key -> "key" + key).toList()));
+
+        assertTrue(filter.size() <= 50, "holds " + filter.size() + " keys");
+    }
+}
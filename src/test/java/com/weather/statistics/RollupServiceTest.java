@@ -0,0 +1,257 @@
+package com.weather.statistics;
+
+import com.weather.statistics.aggregation.MetricAggregator;
+import com.weather.statistics.aggregation.StatisticAccumulator;
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.MetricType;
+import com.weather.statistics.entity.MetricRollup;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.repository.MetricRepository;
+import com.weather.statistics.repository.MetricRollupRepository;
+import com.weather.statistics.repository.MetricTypeRepository;
+import com.weather.statistics.rollup.RollupGranularity;
+import com.weather.statistics.rollup.RollupService;
+import com.weather.statistics.storage.JpaReadingStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RollupServiceTest {
+
+    private static final List<Long> SENSOR_IDS = List.of(1001L);
+    private static final List<String> METRICS = List.of("temperature");
+
+    @Mock
+    private MetricRollupRepository rollupRepository;
+    @Mock
+    private MetricRepository metricRepository;
+    @Mock
+    private MetricTypeRepository metricTypeRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private RollupService rollupService;
+
+    @BeforeEach
+    void setup() {
+        when(metricTypeRepository.findAll()).thenReturn(List.of(new MetricType(1, "temperature")));
+        MetricTypeRegistry metricTypeRegistry = new MetricTypeRegistry(metricTypeRepository, transactionManager, Duration.ofSeconds(10));
+        metricTypeRegistry.load();
+        rollupService = new RollupService(rollupRepository, new JpaReadingStore(metricRepository), metricTypeRegistry,
+                transactionManager, true, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void aggregate_usesCoarsestBucketsAndRawEdges() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 10, 30, 15);
+        LocalDateTime end = LocalDateTime.of(2025, 1, 3, 5, 0);
+        when(rollupRepository.aggregateBuckets(anyList(), anyList(), any(), any(), any())).thenReturn(List.of());
+        when(rollupRepository.aggregateBuckets(SENSOR_IDS, METRICS, RollupGranularity.DAY,
+                LocalDateTime.of(2025, 1, 2, 0, 0), LocalDateTime.of(2025, 1, 3, 0, 0)))
+                .thenReturn(List.of(new MetricAggregateDto(1001L, "temperature", 10L, 100.0, 5.0, 15.0, 1100.0)));
+        when(metricRepository.aggregateBySensorAndTypeHalfOpen(anyList(), anyList(), any(), any()))
+                .thenReturn(List.of(new MetricAggregateDto(1001L, "temperature", 1L, -2.0, -2.0, -2.0, 4.0)));
+        when(metricRepository.aggregateBySensorAndType(SENSOR_IDS, METRICS, end, end)).thenReturn(List.of());
+
+        MetricAggregator aggregator = rollupService.aggregate(SENSOR_IDS, METRICS, start, end, false);
+
+        verify(rollupRepository).aggregateBuckets(SENSOR_IDS, METRICS, RollupGranularity.HOUR,
+                LocalDateTime.of(2025, 1, 1, 11, 0), LocalDateTime.of(2025, 1, 2, 0, 0));
+        verify(rollupRepository).aggregateBuckets(SENSOR_IDS, METRICS, RollupGranularity.HOUR,
+                LocalDateTime.of(2025, 1, 3, 0, 0), end);
+        verify(rollupRepository).aggregateBuckets(SENSOR_IDS, METRICS, RollupGranularity.MINUTE,
+                LocalDateTime.of(2025, 1, 1, 10, 31), LocalDateTime.of(2025, 1, 1, 11, 0));
+        verify(metricRepository).aggregateBySensorAndTypeHalfOpen(SENSOR_IDS, METRICS, start, LocalDateTime.of(2025, 1, 1, 10, 31));
+        verifyNoMoreInteractions(metricRepository);
+
+        var accumulator = aggregator.getGroups().get(1001L).get("temperature");
+        assertEquals(11, accumulator.getCount());
+        assertEquals(98.0, accumulator.getSum());
+        assertEquals(-2.0, accumulator.getMin());
+        assertEquals(15.0, accumulator.getMax());
+    }
+
+    @Test
+    void series_usesOnlyGranularitiesThatDivideTheInterval() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 10, 30);
+        LocalDateTime end = LocalDateTime.of(2025, 1, 3, 12, 0);
+        when(rollupRepository.findBuckets(anyList(), anyList(), any(), any(), any())).thenReturn(List.of());
+        when(rollupRepository.findBuckets(SENSOR_IDS, METRICS, RollupGranularity.HOUR, LocalDateTime.of(2025, 1, 1, 11, 0), end))
+                .thenReturn(List.of(
+                        new MetricRollup(1L, 1001L, "temperature", RollupGranularity.HOUR, LocalDateTime.of(2025, 1, 1, 11, 0),
+                                2L, 10.0, 4.0, 6.0, 2.0, null),
+                        new MetricRollup(2L, 1001L, "temperature", RollupGranularity.HOUR, LocalDateTime.of(2025, 1, 1, 17, 0),
+                                1L, 8.0, 8.0, 8.0, 0.0, null)));
+        when(metricRepository.streamReadings(SENSOR_IDS, METRICS, end, end)).thenReturn(Stream.empty());
+
+        var series = rollupService.series(SENSOR_IDS, METRICS, start, end, Duration.ofHours(6), false)
+                .getGroups().get(1001L).get("temperature");
+
+        verify(rollupRepository, never()).findBuckets(anyList(), anyList(), eq(RollupGranularity.DAY), any(), any());
+        verify(rollupRepository).findBuckets(SENSOR_IDS, METRICS, RollupGranularity.MINUTE, start, LocalDateTime.of(2025, 1, 1, 11, 0));
+        assertEquals(List.of(LocalDateTime.of(2025, 1, 1, 6, 0), LocalDateTime.of(2025, 1, 1, 12, 0)), List.copyOf(series.keySet()));
+        assertEquals(2L, series.get(LocalDateTime.of(2025, 1, 1, 6, 0)).getCount());
+        assertEquals(8.0, series.get(LocalDateTime.of(2025, 1, 1, 12, 0)).getSum());
+    }
+
+    @Test
+    void record_mergesIntoExistingBucketsAndCreatesMissingOnes() {
+        Sensor sensor = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime recorded = LocalDateTime.of(2025, 1, 1, 10, 30, 15);
+        StatisticAccumulator earlier = new StatisticAccumulator(true);
+        earlier.add(30.0);
+        MetricRollup day = new MetricRollup(5L, 1001L, "temperature", RollupGranularity.DAY, LocalDateTime.of(2025, 1, 1, 0, 0),
+                1L, 30.0, 30.0, 30.0, 0.0, earlier.encodeSketch());
+        Map<RollupGranularity, MetricRollup> created = new EnumMap<>(RollupGranularity.class);
+        created.put(RollupGranularity.DAY, day);
+        when(rollupRepository.findBucketForUpdate(eq(1001L), eq("temperature"), any(), any()))
+                .thenAnswer(invocation -> Optional.ofNullable(created.get(invocation.<RollupGranularity>getArgument(2))));
+        doAnswer(invocation -> {
+            RollupGranularity granularity = RollupGranularity.valueOf(invocation.getArgument(2));
+            created.put(granularity, new MetricRollup(null, 1001L, "temperature", granularity, invocation.getArgument(3),
+                    0L, 0.0, 0.0, 0.0, 0.0, null));
+            return null;
+        }).when(rollupRepository).createBucketIfAbsent(eq(1001L), eq(1), anyString(), any());
+
+        rollupService.record(List.of(
+                new Metric(1L, "temperature", 10.0, sensor, recorded, null),
+                new Metric(2L, "temperature", 20.0, sensor, recorded.plusSeconds(5), null)));
+        verifyNoInteractions(rollupRepository);
+        rollupService.flush();
+
+        verify(rollupRepository).createBucketIfAbsent(1001L, 1, "MINUTE", LocalDateTime.of(2025, 1, 1, 10, 30));
+        verify(rollupRepository).createBucketIfAbsent(1001L, 1, "HOUR", LocalDateTime.of(2025, 1, 1, 10, 0));
+        verify(rollupRepository, never()).createBucketIfAbsent(anyLong(), anyInt(), eq("DAY"), any());
+        MetricRollup minute = created.get(RollupGranularity.MINUTE);
+        assertEquals(2L, minute.getReadingCount());
+        assertEquals(10.0, minute.getMinValue());
+        assertEquals(50.0, minute.getM2Value(), 1e-9);
+        assertEquals(2L, created.get(RollupGranularity.HOUR).getReadingCount());
+
+        assertEquals(3L, day.getReadingCount());
+        assertEquals(60.0, day.getSumValue());
+        assertEquals(10.0, day.getMinValue());
+        assertEquals(200.0, day.getM2Value(), 1e-9);
+        assertEquals(30.0, StatisticAccumulator.of(3L, 60.0, 10.0, 30.0, 200.0, day.getSketch()).getQuantile(1.0), 0.3);
+    }
+
+    @Test
+    void record_mergesIntoBucketCreatedConcurrently() {
+        Sensor sensor = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime recorded = LocalDateTime.of(2025, 1, 1, 10, 30, 15);
+        MetricRollup concurrent = new MetricRollup(7L, 1001L, "temperature", RollupGranularity.HOUR, LocalDateTime.of(2025, 1, 1, 10, 0),
+                1L, 30.0, 30.0, 30.0, 0.0, null);
+        MetricRollup empty = new MetricRollup(8L, 1001L, "temperature", RollupGranularity.MINUTE, LocalDateTime.of(2025, 1, 1, 10, 30),
+                0L, 0.0, 0.0, 0.0, 0.0, null);
+        when(rollupRepository.findBucketForUpdate(anyLong(), anyString(), eq(RollupGranularity.DAY), any()))
+                .thenReturn(Optional.of(new MetricRollup(9L, 1001L, "temperature", RollupGranularity.DAY,
+                        LocalDateTime.of(2025, 1, 1, 0, 0), 0L, 0.0, 0.0, 0.0, 0.0, null)));
+        when(rollupRepository.findBucketForUpdate(anyLong(), anyString(), eq(RollupGranularity.MINUTE), any()))
+                .thenReturn(Optional.of(empty));
+        when(rollupRepository.findBucketForUpdate(anyLong(), anyString(), eq(RollupGranularity.HOUR), any()))
+                .thenReturn(Optional.empty(), Optional.of(concurrent));
+
+        rollupService.record(List.of(new Metric(1L, "temperature", 10.0, sensor, recorded, null)));
+        rollupService.flush();
+
+        // The upsert found the other writer's row, so the second locked read returns it.
+        verify(rollupRepository).createBucketIfAbsent(anyLong(), anyInt(), eq("HOUR"), any());
+        assertEquals(2L, concurrent.getReadingCount());
+        assertEquals(40.0, concurrent.getSumValue());
+        assertEquals(10.0, concurrent.getMinValue());
+        assertEquals(1L, empty.getReadingCount());
+        assertEquals(10.0, empty.getMinValue());
+        assertEquals(10.0, empty.getMaxValue());
+    }
+
+    @Test
+    void aggregate_includesDeltasNotFlushedYet() {
+        Sensor sensor = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2025, 1, 2, 0, 0);
+        when(rollupRepository.aggregateBuckets(anyList(), anyList(), any(), any(), any())).thenReturn(List.of());
+        when(metricRepository.aggregateBySensorAndType(SENSOR_IDS, METRICS, end, end)).thenReturn(List.of());
+
+        rollupService.record(List.of(
+                new Metric(1L, "temperature", 10.0, sensor, LocalDateTime.of(2025, 1, 1, 10, 30), null),
+                new Metric(2L, "temperature", 20.0, sensor, LocalDateTime.of(2025, 1, 1, 18, 0), null),
+                new Metric(3L, "temperature", 99.0, sensor, end.plusHours(1), null),
+                new Metric(4L, "humidity", 50.0, sensor, LocalDateTime.of(2025, 1, 1, 12, 0), null)));
+
+        var accumulator = rollupService.aggregate(SENSOR_IDS, METRICS, start, end, false).getGroups().get(1001L).get("temperature");
+        assertEquals(2L, accumulator.getCount());
+        assertEquals(30.0, accumulator.getSum());
+        assertEquals(20.0, accumulator.getMax());
+    }
+
+    @Test
+    void flush_keepsDeltasWhenTheTransactionFails() {
+        Sensor sensor = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime recorded = LocalDateTime.of(2025, 1, 1, 10, 30, 15);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(rollupRepository.findBucketForUpdate(anyLong(), anyString(), any(), any()))
+                .thenThrow(new IllegalStateException("connection lost"));
+        rollupService.record(List.of(new Metric(1L, "temperature", 10.0, sensor, recorded, null)));
+
+        assertThrows(IllegalStateException.class, () -> rollupService.flush());
+        verify(transactionManager).rollback(transactionStatus);
+
+        MetricRollup minute = new MetricRollup(8L, 1001L, "temperature", RollupGranularity.MINUTE, LocalDateTime.of(2025, 1, 1, 10, 30),
+                0L, 0.0, 0.0, 0.0, 0.0, null);
+        reset(rollupRepository);
+        when(rollupRepository.findBucketForUpdate(anyLong(), anyString(), any(), any()))
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(2) == RollupGranularity.MINUTE ? minute
+                        : new MetricRollup(9L, 1001L, "temperature", invocation.getArgument(2), invocation.getArgument(3),
+                        0L, 0.0, 0.0, 0.0, 0.0, null)));
+        rollupService.flush();
+
+        verify(transactionManager).commit(transactionStatus);
+        assertEquals(1L, minute.getReadingCount());
+        assertEquals(10.0, minute.getSumValue());
+    }
+
+    @Test
+    void aggregate_withQuantilesMergesBucketSketchesAndRawEdges() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2025, 1, 1, 0, 0, 30);
+        StatisticAccumulator bucket = new StatisticAccumulator(true);
+        for (int i = 1; i <= 99; i++) {
+            bucket.add(i);
+        }
+        when(metricRepository.streamReadingsHalfOpen(SENSOR_IDS, METRICS, start, end))
+                .thenReturn(Stream.of(new MetricReadingDto(1001L, "temperature", 100.0, start)));
+        when(metricRepository.streamReadings(SENSOR_IDS, METRICS, end, end)).thenReturn(Stream.empty());
+
+        var accumulator = rollupService.aggregate(SENSOR_IDS, METRICS, start, end, true).getGroups().get(1001L).get("temperature");
+        assertEquals(100.0, accumulator.getQuantile(1.0), 1.0);
+
+        StatisticAccumulator merged = StatisticAccumulator.of(99L, bucket.getSum(), 1.0, 99.0, bucket.getM2(), bucket.encodeSketch());
+        merged.merge(accumulator);
+        assertEquals(100L, merged.getCount());
+        assertEquals(50.0, merged.getQuantile(0.5), 0.5);
+        assertEquals(Math.sqrt(833.25), merged.getStandardDeviation(), 1e-9);
+        verifyNoInteractions(rollupRepository);
+    }
+}
@@ -0,0 +1,204 @@
+package com.weather.statistics;
+
+import com.weather.statistics.dto.MetricAggregateDto;
+import com.weather.statistics.dto.MetricReadingDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.storage.segment.SegmentReadingStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentReadingStoreTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    private static final Sensor SENSOR = new Sensor(1L, 1001L, "London", List.of(), NOW);
+
+    @TempDir
+    Path directory;
+
+    private SegmentReadingStore store;
+
+    @BeforeEach
+    void setup() throws Exception {
+        store = open(null);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    void rangeScansAndAggregatesRespectBoundsAndTypes() {
+        store.append(List.of(
+                metric("temperature", 10.0, NOW.minusMinutes(10)),
+                metric("humidity", 80.0, NOW.minusMinutes(5)),
+                metric("temperature", 20.0, NOW.minusMinutes(5)),
+                metric("temperature", 30.0, NOW)));
+
+        List<MetricReadingDto> readings = new ArrayList<>();
+        store.forEachReadingHalfOpen(List.of(1001L), List.of("temperature"), NOW.minusMinutes(10), NOW, readings::add);
+        assertEquals(List.of(10.0, 20.0), readings.stream().map(MetricReadingDto::getData).toList());
+
+        List<MetricAggregateDto> aggregates = store.aggregate(List.of(1001L, 1001L), List.of("temperature", "wind"),
+                NOW.minusMinutes(10), NOW);
+        assertEquals(List.of(new MetricAggregateDto(1001L, "temperature", 3L, 60.0, 10.0, 30.0, 1400.0)), aggregates);
+    }
+
+    @Test
+    void readingsSurviveReopenAndRollOverSegments() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            store.append(List.of(metric("temperature", i, NOW.minusMinutes(10 - i))));
+        }
+        store.close();
+        store = open(null);
+
+        List<MetricReadingDto> readings = new ArrayList<>();
+        store.forEachReadingInOrder(List.of(1001L), List.of("temperature"), NOW.minusDays(1), NOW, readings::add);
+        assertEquals(10, readings.size());
+        assertEquals(NOW.minusMinutes(10), readings.get(0).getRecordedTime());
+        assertEquals(3, segmentFiles().size());
+    }
+
+    @Test
+    void compactionSortsCompressesAndDropsExpiredReadings() throws Exception {
+        store.close();
+        store = open(Duration.ofDays(1));
+        store.append(List.of(
+                metric("temperature", 1.0, NOW.minusDays(2)),
+                metric("temperature", 4.0, NOW.minusMinutes(1)),
+                metric("temperature", 2.0, NOW.minusMinutes(3)),
+                metric("temperature", 3.0, NOW.minusMinutes(2)),
+                metric("temperature", 5.0, NOW)));
+
+        assertEquals(1, store.compact());
+        store.close();
+        store = open(Duration.ofDays(1));
+
+        List<Double> values = new ArrayList<>();
+        store.forEachReading(List.of(1001L), List.of("temperature"), NOW.minusDays(3), NOW, r -> values.add(r.getData()));
+        assertEquals(List.of(2.0, 3.0, 4.0, 5.0), values);
+        assertEquals(List.of("00000000000000000001.1.blk", "00000000000000000002.0.seg"),
+                segmentFiles().stream().map(file -> file.getFileName().toString()).sorted().toList());
+    }
+
+    @Test
+    void readingKeysAreEnforcedAcrossReopen() throws Exception {
+        store.append(List.of(keyed(10.0, NOW.minusMinutes(2), "1001/id:a"), keyed(11.0, NOW.minusMinutes(1), "1001/id:b")));
+        store.close();
+        store = open(null);
+
+        assertEquals(List.of("1001/id:b"), store.findExistingReadingKeys(List.of("1001/id:b", "1001/id:c")));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> store.append(List.of(keyed(12.0, NOW, "1001/id:c"), keyed(10.0, NOW.minusMinutes(2), "1001/id:a"))));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> store.append(List.of(keyed(12.0, NOW, "1001/id:d"), keyed(12.0, NOW, "1001/id:d"))));
+        // Nothing of a rejected append is kept, so its new keys can still be stored.
+        store.append(List.of(keyed(12.0, NOW, "1001/id:c")));
+
+        List<Double> values = new ArrayList<>();
+        store.forEachReadingInOrder(List.of(1001L), List.of("temperature"), NOW.minusDays(1), NOW, r -> values.add(r.getData()));
+        assertEquals(List.of(10.0, 11.0, 12.0), values);
+        assertEquals(List.of("1001/id:c"), store.findExistingReadingKeys(List.of("1001/id:c", "1001/id:d")));
+    }
+
+    @Test
+    void readingKeysOlderThanTheLatenessWindowAreDropped() throws Exception {
+        store.append(List.of(keyed(10.0, NOW.minusDays(2), "1001/id:old"), keyed(11.0, NOW.minusHours(1), "1001/id:new")));
+
+        store.compact();
+        assertEquals(List.of("1001/id:new"), store.findExistingReadingKeys(List.of("1001/id:old", "1001/id:new")));
+        store.close();
+        store = open(null);
+
+        assertEquals(List.of("1001/id:new"), store.findExistingReadingKeys(List.of("1001/id:old", "1001/id:new")));
+        assertEquals(16, Files.size(directory.resolve("reading-keys.dat")));
+    }
+
+    @Test
+    void appendInsideATransactionWritesOnCommitAndReleasesKeysOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.append(List.of(keyed(10.0, NOW, "1001/id:a")));
+            assertEquals(List.of("1001/id:a"), store.findExistingReadingKeys(List.of("1001/id:a")));
+            assertEquals(0, temperatures().size());
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+            assertEquals(List.of(), store.findExistingReadingKeys(List.of("1001/id:a")));
+
+            List<Metric> stored = store.append(List.of(keyed(10.0, NOW, "1001/id:a")));
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+            assertEquals(1, stored.size());
+            assertEquals(List.of(10.0), temperatures());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void orderedScansSortReadingsAcrossSlicesAndSegments() {
+        store.append(List.of(
+                metric("temperature", 3.0, NOW.minusHours(1)),
+                metric("temperature", 1.0, NOW.minusHours(3)),
+                metric("temperature", 4.0, NOW),
+                metric("temperature", 2.0, NOW.minusHours(2).minusMinutes(30)),
+                metric("temperature", 0.0, NOW.minusHours(5))));
+
+        List<Double> values = new ArrayList<>();
+        store.forEachReadingInOrder(List.of(1001L), List.of("temperature"), NOW.minusHours(4), NOW.plusDays(1),
+                r -> values.add(r.getData()));
+        assertEquals(List.of(1.0, 2.0, 3.0, 4.0), values);
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private List<Double> temperatures() {
+        List<Double> values = new ArrayList<>();
+        store.forEachReadingInOrder(List.of(1001L), List.of("temperature"), NOW.minusDays(1), NOW, r -> values.add(r.getData()));
+        return values;
+    }
+
+    private SegmentReadingStore open(Duration retention) throws Exception {
+        SegmentReadingStore segmentStore = new SegmentReadingStore(directory, 4, retention, Duration.ofHours(1), Duration.ofHours(1),
+                Duration.ofDays(1));
+        segmentStore.open();
+        return segmentStore;
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory.resolve("sensor-1001"))) {
+            return files.toList();
+        }
+    }
+
+    private static Metric metric(String type, double value, LocalDateTime time) {
+        return new Metric(null, type, value, SENSOR, time, null);
+    }
+
+    private static Metric keyed(double value, LocalDateTime time, String readingKey) {
+        return new Metric(null, "temperature", value, SENSOR, time, readingKey);
+    }
+}
@@ -0,0 +1,107 @@
+package com.weather.statistics;
+
+import com.weather.statistics.aggregation.MetricAggregator;
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.entity.MetricType;
+import com.weather.statistics.exception.SensorNotFoundException;
+import com.weather.statistics.query.ShardedQueryExecutor;
+import com.weather.statistics.repository.MetricTypeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardedQueryExecutorTest {
+
+    private static MetricTypeRegistry metricTypeRegistry;
+
+    private ShardedQueryExecutor executor;
+
+    @BeforeAll
+    static void registerTypes() {
+        MetricTypeRepository metricTypeRepository = mock(MetricTypeRepository.class);
+        when(metricTypeRepository.findAll()).thenReturn(List.of(new MetricType(1, "temperature")));
+        metricTypeRegistry = new MetricTypeRegistry(metricTypeRepository, mock(PlatformTransactionManager.class), Duration.ofSeconds(10));
+        metricTypeRegistry.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void mergesShardsOfDistinctSensors() {
+        executor = new ShardedQueryExecutor(true, 4, 10, 8);
+        List<Long> sensorIds = new ArrayList<>(LongStream.rangeClosed(1, 100).boxed().toList());
+        sensorIds.add(1L);
+        List<List<Long>> shards = Collections.synchronizedList(new ArrayList<>());
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        MetricAggregator aggregator = executor.aggregate(sensorIds, shard -> {
+            shards.add(shard);
+            threads.add(Thread.currentThread().getName());
+            return readings(shard);
+        });
+
+        assertEquals(13, shards.size());
+        assertEquals(100, aggregator.getGroups().size());
+        assertEquals(100, shards.stream().mapToInt(List::size).sum());
+        assertEquals(2, aggregator.getGroups().get(42L).get("temperature").getCount());
+        assertEquals(42.5, aggregator.getGroups().get(42L).get("temperature").getAverage());
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    void smallQueriesRunOnTheCallingThread() {
+        executor = new ShardedQueryExecutor(true, 4, 10, 8);
+        List<Long> sensorIds = LongStream.rangeClosed(1, 9).boxed().collect(Collectors.toList());
+        List<String> threads = new ArrayList<>();
+
+        executor.aggregate(sensorIds, shard -> {
+            threads.add(Thread.currentThread().getName());
+            return readings(shard);
+        });
+
+        assertEquals(List.of(Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    void rethrowsShardFailures() {
+        executor = new ShardedQueryExecutor(true, 2, 1, 1);
+        Function<List<Long>, MetricAggregator> failing = shard -> {
+            if (shard.contains(3L)) {
+                throw new SensorNotFoundException("missing 3");
+            }
+            return readings(shard);
+        };
+
+        assertThrows(SensorNotFoundException.class, () -> executor.aggregate(List.of(1L, 2L, 3L), failing));
+    }
+
+    private static MetricAggregator readings(List<Long> sensorIds) {
+        MetricAggregator aggregator = new MetricAggregator(metricTypeRegistry);
+        for (Long sensorId : sensorIds) {
+            aggregator.add(sensorId, "temperature", sensorId);
+            aggregator.add(sensorId, "temperature", sensorId + 1);
+        }
+        return aggregator;
+    }
+}
@@ -1,13 +1,53 @@
 package com.weather.statistics;
 
+import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.RequestDto;
+import com.weather.statistics.entity.MetricRollup;
+import com.weather.statistics.repository.MetricRollupRepository;
+import com.weather.statistics.rollup.RollupGranularity;
+import com.weather.statistics.rollup.RollupService;
+import com.weather.statistics.service.WeatherService;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @SpringBootTest
 class StatisticsApplicationTests {
 
+	@Autowired
+	private WeatherService weatherService;
+
+	@Autowired
+	private MetricRollupRepository rollupRepository;
+
+	@Autowired
+	private RollupService rollupService;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void rollupBucketsAreCreatedAndMergedInTheDatabase() {
+		LocalDateTime recorded = LocalDateTime.now().minusMinutes(5).truncatedTo(ChronoUnit.MINUTES);
+
+		weatherService.sensorData(new RequestDto(4242L, "Lisbon", List.of(new MetricDto("temperature", 10.0, recorded))));
+		weatherService.sensorData(new RequestDto(4242L, "Lisbon", List.of(new MetricDto("temperature", 20.0, recorded.plusSeconds(1)))));
+		rollupService.flush();
+
+		MetricRollup minute = rollupRepository.findAll().stream()
+				.filter(rollup -> rollup.getSensorId() == 4242L && rollup.getGranularity() == RollupGranularity.MINUTE)
+				.findFirst().orElseThrow();
+		assertEquals(recorded, minute.getBucketStart());
+		assertEquals(2L, minute.getReadingCount());
+		assertEquals(30.0, minute.getSumValue());
+		assertEquals(10.0, minute.getMinValue());
+	}
+
 }
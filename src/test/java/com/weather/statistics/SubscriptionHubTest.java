@@ -0,0 +1,208 @@
+package com.weather.statistics;
+
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.dto.LiveUpdateDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.exception.SomeSensorsNotFoundException;
+import com.weather.statistics.exception.SubscriberLimitException;
+import com.weather.statistics.ingest.MetricsWrittenEvent;
+import com.weather.statistics.repository.SensorRepository;
+import com.weather.statistics.subscription.SubscriptionHub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SubscriptionHubTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Mock
+    private SensorRepository sensorRepository;
+
+    private SensorRegistry sensorRegistry;
+    private SubscriptionHub hub;
+    private final Sensor london = new Sensor(1L, 1001L, "London", List.of(), NOW);
+    private final Sensor paris = new Sensor(2L, 1002L, "Paris", List.of(), NOW);
+
+    @BeforeEach
+    void setup() {
+        sensorRegistry = new SensorRegistry(sensorRepository, 100, Duration.ofMinutes(5));
+        sensorRegistry.register(london);
+        sensorRegistry.register(paris);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    void coalescesReadingsIntoOneEventPerFlush() {
+        hub = new SubscriptionHub(sensorRegistry, 10, 100, Duration.ofHours(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(1), Duration.ofSeconds(30), 0, 5);
+        RecordingEmitter emitter = new RecordingEmitter();
+        hub.subscribe(List.of(1001L), List.of("temperature"), emitter);
+
+        hub.onMetricsWritten(new MetricsWrittenEvent(List.of(
+                new Metric(1L, "temperature", 20.0, london, NOW.minusSeconds(2), null),
+                new Metric(2L, "temperature", 22.0, london, NOW, null),
+                new Metric(3L, "temperature", 18.0, london, NOW.minusSeconds(1), null),
+                new Metric(4L, "humidity", 70.0, london, NOW, null),
+                new Metric(5L, "temperature", 5.0, paris, NOW, null))));
+        hub.flush();
+        hub.flush();
+
+        assertEquals(1, emitter.updates.size());
+        LiveUpdateDto update = emitter.updates.get(0).get(0);
+        assertEquals(1, emitter.updates.get(0).size());
+        assertEquals(22.0, update.getData());
+        assertEquals(NOW, update.getRecordedTime());
+        assertEquals(3, update.getCount());
+        assertEquals(18.0, update.getMin());
+        assertEquals(20.0, update.getAverage());
+        assertEquals(3, hub.stats().getReadingsQueued());
+    }
+
+    @Test
+    void dropsSubscribersThatFallBehind() throws Exception {
+        hub = new SubscriptionHub(sensorRegistry, 10, 100, Duration.ofHours(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(1), Duration.ZERO, 1, 5);
+        hub.start();
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                sending.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(builder);
+            }
+        };
+        hub.subscribe(List.of(1001L), List.of("temperature"), slow);
+
+        hub.onMetricsWritten(new MetricsWrittenEvent(List.of(new Metric(1L, "temperature", 20.0, london, NOW, null))));
+        hub.flush();
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        hub.onMetricsWritten(new MetricsWrittenEvent(List.of(new Metric(2L, "temperature", 21.0, london, NOW, null))));
+        hub.flush();
+        release.countDown();
+
+        assertEquals(1, hub.stats().getDropped());
+        assertEquals(0, hub.stats().getSubscribers());
+    }
+
+    @Test
+    void timeWaitingForASenderIsNotLag() throws Exception {
+        hub = new SubscriptionHub(sensorRegistry, 10, 100, Duration.ofHours(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(1), Duration.ZERO, 1, 5);
+        hub.start();
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter stuck = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                // A client that stopped reading: the write ignores the interrupt until released.
+                sending.countDown();
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        RecordingEmitter waiting = new RecordingEmitter();
+        hub.subscribe(List.of(1001L), List.of("temperature"), stuck);
+        hub.onMetricsWritten(new MetricsWrittenEvent(List.of(new Metric(1L, "temperature", 20.0, london, NOW, null))));
+        hub.flush();
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        hub.subscribe(List.of(1002L), List.of("temperature"), waiting);
+        hub.onMetricsWritten(new MetricsWrittenEvent(List.of(new Metric(2L, "temperature", 15.0, paris, NOW, null))));
+        hub.flush();
+        hub.flush();
+
+        assertEquals(1, hub.stats().getDropped());
+        assertEquals(1, hub.stats().getSubscribers());
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waiting.updates.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(15.0, waiting.updates.get(0).get(0).getData());
+    }
+
+    @Test
+    void dropsSubscribersOnceTheSenderPoolIsShutDown() {
+        hub = new SubscriptionHub(sensorRegistry, 10, 100, Duration.ofHours(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(1), Duration.ofSeconds(30), 1, 5);
+        hub.start();
+        RecordingEmitter emitter = new RecordingEmitter();
+        hub.subscribe(List.of(1001L), List.of("temperature"), emitter);
+        ((ExecutorService) ReflectionTestUtils.getField(hub, "senderPool")).shutdownNow();
+
+        hub.onMetricsWritten(new MetricsWrittenEvent(List.of(new Metric(1L, "temperature", 20.0, london, NOW, null))));
+        hub.flush();
+
+        assertEquals(0, hub.stats().getSubscribers());
+        assertEquals(1, hub.stats().getDropped());
+        assertTrue(emitter.updates.isEmpty());
+    }
+
+    @Test
+    void rejectsUnknownSensorsAndSubscribersOverTheLimit() {
+        hub = new SubscriptionHub(sensorRegistry, 1, 100, Duration.ofHours(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(1), Duration.ofSeconds(30), 0, 5);
+
+        assertThrows(SomeSensorsNotFoundException.class,
+                () -> hub.subscribe(List.of(1001L, 1003L), List.of("temperature"), new RecordingEmitter()));
+        hub.subscribe(List.of(1001L), List.of("temperature"), new RecordingEmitter());
+        SubscriberLimitException ex = assertThrows(SubscriberLimitException.class,
+                () -> hub.subscribe(List.of(1002L), List.of("temperature"), new RecordingEmitter()));
+
+        assertEquals(5, ex.getRetryAfterSeconds());
+        assertEquals(1, hub.stats().getSubscribers());
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        final List<List<LiveUpdateDto>> updates = new CopyOnWriteArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void send(SseEventBuilder builder) throws IOException {
+            builder.build().stream()
+                    .filter(part -> part.getData() instanceof List)
+                    .forEach(part -> updates.add((List<LiveUpdateDto>) part.getData()));
+        }
+    }
+}
@@ -1,12 +1,33 @@
 package com.weather.statistics;
 
+import com.weather.statistics.cache.QueryResultCache;
+import com.weather.statistics.cache.SensorRegistry;
 import com.weather.statistics.controller.WeatherController;
+import com.weather.statistics.dto.BatchRequestDto;
+import com.weather.statistics.dto.BulkSensorRequestDto;
 import com.weather.statistics.dto.MetricDto;
 import com.weather.statistics.dto.RequestDto;
 import com.weather.statistics.dto.ResponseDto;
+import com.weather.statistics.dto.SensorBatchResultDto;
+import com.weather.statistics.dto.SensorRegistrationResultDto;
+import com.weather.statistics.dto.SeriesPointDto;
 import com.weather.statistics.entity.Metric;
 import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.exception.GlobalExceptionHandler;
+import com.weather.statistics.exception.IngestQueueFullException;
+import com.weather.statistics.exception.SubscriberLimitException;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.IngestQueue;
+import com.weather.statistics.ingest.ReadingBatch;
+import com.weather.statistics.ingest.ReadingBatchCodec;
+import com.weather.statistics.ingest.ReadingBatchMessageConverter;
+import com.weather.statistics.ingest.ReadingValidator;
+import com.weather.statistics.metrics.WeatherMetrics;
+import com.weather.statistics.query.ExportFormat;
+import com.weather.statistics.query.MetricExporter;
 import com.weather.statistics.service.WeatherService;
+import com.weather.statistics.subscription.SubscriptionHub;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,17 +36,28 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -35,11 +67,26 @@ class WeatherControllerTest {
     private MockMvc mockMvc;
     @Mock
     private WeatherService weatherService;
+    @Mock
+    private IngestQueue ingestQueue;
+    @Mock
+    private SensorRegistry sensorRegistry;
+    @Mock
+    private QueryResultCache queryResultCache;
+    @Mock
+    private MetricExporter metricExporter;
+    @Mock
+    private HotStore hotStore;
+    @Mock
+    private SubscriptionHub subscriptionHub;
     @InjectMocks
     private WeatherController sensorController;
     @BeforeEach
     public void setup() {
-        mockMvc = MockMvcBuilders.standaloneSetup(sensorController).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(sensorController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        lenient().when(queryResultCache.defaultWindowEnd(any())).thenAnswer(invocation -> invocation.getArgument(0));
     }
     @Test
     void createSensor_success() throws Exception {
@@ -100,6 +147,172 @@ class WeatherControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void saveBatch_success() throws Exception {
+        List<SensorBatchResultDto> results = List.of(new SensorBatchResultDto(1001L, 2, 0, null));
+        when(weatherService.batchSensorData(any(BatchRequestDto.class))).thenReturn(new ResponseDto("200", "Batch processed", results));
+
+        mockMvc.perform(post("/weather/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorList\":[{\"sensorId\":1001, \"location\":\"London\", \"metricList\":[{\"type\":\"temperature\",\"data\":22.5},{\"type\":\"humidity\",\"data\":40.0}]}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].sensorId").value(1001))
+                .andExpect(jsonPath("$.data[0].accepted").value(2));
+    }
+
+    @Test
+    void saveBatch_missingSensorList() throws Exception {
+        mockMvc.perform(post("/weather/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void registerSensors_nullEntry() throws Exception {
+        mockMvc.perform(post("/weather/sensors/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorList\":[{\"sensorId\":1001, \"location\":\"London\"},null]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void registerSensors_locationTooShort() throws Exception {
+        mockMvc.perform(post("/weather/sensors/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorList\":[{\"sensorId\":1001, \"location\":\"L\"}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void registerSensors_success() throws Exception {
+        List<SensorRegistrationResultDto> results = List.of(
+                new SensorRegistrationResultDto(1001L, SensorRegistrationResultDto.CREATED, null),
+                new SensorRegistrationResultDto(1002L, SensorRegistrationResultDto.CONFLICT, "Sensor 1002 is already assigned to Paris, cannot change to Berlin"));
+        when(weatherService.registerSensors(any(BulkSensorRequestDto.class))).thenReturn(new ResponseDto("200", "Sensors registered", results));
+
+        mockMvc.perform(post("/weather/sensors/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorList\":[{\"sensorId\":1001, \"location\":\"London\"},{\"sensorId\":1002, \"location\":\"Berlin\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].status").value("created"))
+                .andExpect(jsonPath("$.data[1].status").value("conflict"));
+    }
+
+    @Test
+    void createSensor_writeBehindAccepted() throws Exception {
+        when(ingestQueue.isEnabled()).thenReturn(true);
+        when(ingestQueue.submit(any(RequestDto.class))).thenReturn(new ResponseDto("202", "Readings accepted for processing", 1));
+
+        mockMvc.perform(post("/weather/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorId\":1001, \"location\":\"London\", \"metricList\":[{\"type\":\"Temperature\",\"data\":22.5}]}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("202"));
+    }
+
+    @Test
+    void createSensor_writeBehindRejectsReadingsOutsideTheTimeWindow() throws Exception {
+        ReadingValidator readingValidator = new ReadingValidator(
+                new WeatherMetrics(new SimpleMeterRegistry(), false, Duration.ofSeconds(1), 1.0), Duration.ofHours(24), Duration.ofMinutes(1));
+        IngestQueue writeBehind = new IngestQueue(weatherService, readingValidator, true, 100, 0, 10, 1, false);
+        writeBehind.start();
+        MockMvc writeBehindMvc = MockMvcBuilders.standaloneSetup(new WeatherController(weatherService, writeBehind, sensorRegistry,
+                        queryResultCache, metricExporter, hotStore, subscriptionHub))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        writeBehindMvc.perform(post("/weather/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorId\":1001, \"location\":\"London\", \"metricList\":[{\"type\":\"Temperature\",\"data\":22.5, \"recordedTime\":\""
+                                + now.minusDays(2) + "\"}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("outside the accepted window")));
+        writeBehindMvc.perform(post("/weather/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorId\":1001, \"location\":\"London\", \"metricList\":[{\"type\":\"Temperature\",\"data\":22.5, \"recordedTime\":\""
+                                + now.minusMinutes(5) + "\"}]}"))
+                .andExpect(status().isAccepted());
+
+        assertEquals(1, writeBehind.stats().getDepth());
+    }
+
+    @Test
+    void createSensor_writeBehindQueueFull() throws Exception {
+        when(ingestQueue.isEnabled()).thenReturn(true);
+        when(ingestQueue.submit(any(RequestDto.class))).thenThrow(new IngestQueueFullException("Ingest queue is full, retry later", 2));
+
+        mockMvc.perform(post("/weather/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sensorId\":1001, \"location\":\"London\", \"metricList\":[{\"type\":\"Temperature\",\"data\":22.5}]}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    void subscribe_startsEventStream() throws Exception {
+        when(subscriptionHub.subscribe(List.of(1001L, 1002L), List.of("temperature"))).thenReturn(new SseEmitter());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/weather/subscribe")
+                        .param("sensorIds", "1001", "1002")
+                        .param("metrics", "temperature"))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void subscribe_subscriberLimitReached() throws Exception {
+        when(subscriptionHub.subscribe(anyList(), anyList())).thenThrow(new SubscriberLimitException("Too many live subscribers, retry later", 5));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/weather/subscribe")
+                        .param("sensorIds", "1001")
+                        .param("metrics", "temperature"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    @Test
+    void createSensor_binaryReadings() throws Exception {
+        MockMvc binaryMockMvc = MockMvcBuilders.standaloneSetup(sensorController)
+                .setMessageConverters(new ReadingBatchMessageConverter(), new MappingJackson2HttpMessageConverter())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        byte[] message = ReadingBatchCodec.encode(ReadingBatch.from(new RequestDto(1001L, "London",
+                List.of(new MetricDto("Temperature", 22.5, null)))));
+        when(weatherService.sensorData(any(ReadingBatch.class)))
+                .thenReturn(new ResponseDto("201", "Sensor created successfully", new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now())));
+
+        binaryMockMvc.perform(post("/weather/create")
+                        .contentType(ReadingBatchCodec.MEDIA_TYPE)
+                        .content(message))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.sensorId").value(1001));
+        binaryMockMvc.perform(post("/weather/create")
+                        .contentType(ReadingBatchCodec.MEDIA_TYPE)
+                        .content(new byte[]{1, 2, 3}))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createSensor_binaryReadingsWriteBehind() throws Exception {
+        MockMvc binaryMockMvc = MockMvcBuilders.standaloneSetup(sensorController)
+                .setMessageConverters(new ReadingBatchMessageConverter(), new MappingJackson2HttpMessageConverter())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        byte[] message = ReadingBatchCodec.encode(ReadingBatch.from(new RequestDto(1001L, "London",
+                List.of(new MetricDto("Temperature", 22.5, null), new MetricDto("Humidity", 40.0, null)))));
+        when(ingestQueue.isEnabled()).thenReturn(true);
+        when(ingestQueue.submit(any(ReadingBatch.class))).thenReturn(new ResponseDto("202", "Readings accepted for processing", 2));
+
+        binaryMockMvc.perform(post("/weather/create")
+                        .contentType(ReadingBatchCodec.MEDIA_TYPE)
+                        .content(message))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.data").value(2));
+        verify(ingestQueue).submit(argThat((ReadingBatch readings) -> readings.size() == 2));
+        verify(weatherService, never()).sensorData(any(ReadingBatch.class));
+    }
+
     @Test
     void getSensorMetrics_validRequest() throws Exception {
         Map<Long, Map<String, Double>> mockData = new HashMap<>();
@@ -147,6 +360,8 @@ class WeatherControllerTest {
         Map<String, Double> metricMap = new HashMap<>();
         metricMap.put("Temperature", 22.0);
         mockData.put(1001L, metricMap);
+        LocalDateTime windowEnd = LocalDateTime.of(2025, 2, 1, 12, 1);
+        when(queryResultCache.defaultWindowEnd(any())).thenReturn(windowEnd);
 
         when(weatherService.querySensorData(anyList(), anyList(), anyString(), any(), any())).thenReturn(mockData);
         mockMvc.perform(MockMvcRequestBuilders.get("/weather/metrics")
@@ -156,6 +371,64 @@ class WeatherControllerTest {
                 .andExpect(status().isOk())  // Assert: Status is 200 OK
                 .andExpect(jsonPath("$.status").value("200"))
                 .andExpect(jsonPath("$.message").value("Metrics fetched successfully"));
+        verify(weatherService).querySensorData(List.of(1001L), List.of("Temperature"), "average", windowEnd.minusDays(7), windowEnd);
+    }
+
+    @Test
+    void getSensorMetrics_withInterval() throws Exception {
+        Map<Long, Map<String, List<SeriesPointDto>>> series = Map.of(1001L,
+                Map.of("Temperature", List.of(new SeriesPointDto(LocalDateTime.of(2025, 1, 30, 12, 0), 21.5))));
+        when(weatherService.querySensorSeries(anyList(), anyList(), anyString(), any(), any(), eq(Duration.ofHours(1)), eq(100)))
+                .thenReturn(series);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/weather/metrics")
+                        .param("sensorIds", "1001")
+                        .param("metrics", "Temperature")
+                        .param("statistic", "average")
+                        .param("interval", "1h")
+                        .param("maxPoints", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.1001.Temperature[0].value").value(21.5));
+    }
+
+    @Test
+    void getSensorMetrics_invalidInterval() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/weather/metrics")
+                        .param("sensorIds", "1001")
+                        .param("metrics", "Temperature")
+                        .param("statistic", "average")
+                        .param("interval", "1w"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportReadings_streamsCsv() throws Exception {
+        doAnswer(invocation -> {
+            java.io.OutputStream out = invocation.getArgument(5);
+            out.write("sensorId,type,data,recordedTime\n".getBytes());
+            return null;
+        }).when(metricExporter).export(anyList(), anyList(), any(), any(), eq(ExportFormat.CSV), any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/weather/export")
+                        .param("sensorIds", "1001")
+                        .param("metrics", "Temperature")
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(content().string("sensorId,type,data,recordedTime\n"));
+    }
+
+    @Test
+    void exportReadings_invalidFormat() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/weather/export")
+                        .param("sensorIds", "1001")
+                        .param("metrics", "Temperature")
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest());
     }
 
 }
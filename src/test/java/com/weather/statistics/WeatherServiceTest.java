@@ -1,29 +1,69 @@
 package com.weather.statistics;
 
+import com.weather.statistics.cache.MetricTypeRegistry;
+import com.weather.statistics.cache.QueryResultCache;
+import com.weather.statistics.cache.SensorRegistry;
+import com.weather.statistics.dto.BatchRequestDto;
+import com.weather.statistics.dto.BulkSensorRequestDto;
+import com.weather.statistics.dto.MetricAggregateDto;
 import com.weather.statistics.dto.MetricDto;
+import com.weather.statistics.dto.MetricReadingDto;
 import com.weather.statistics.dto.RequestDto;
 import com.weather.statistics.dto.ResponseDto;
+import com.weather.statistics.dto.SensorBatchResultDto;
+import com.weather.statistics.dto.SensorDto;
+import com.weather.statistics.dto.SensorRegistrationResultDto;
+import com.weather.statistics.dto.SeriesPointDto;
+import com.weather.statistics.entity.Metric;
+import com.weather.statistics.entity.MetricType;
 import com.weather.statistics.entity.Sensor;
+import com.weather.statistics.exception.InvalidStatisticException;
 import com.weather.statistics.exception.SensorLocationConflictException;
+import com.weather.statistics.exception.SomeSensorsNotFoundException;
+import com.weather.statistics.hotstore.HotStore;
+import com.weather.statistics.ingest.MetricWriter;
+import com.weather.statistics.ingest.ReadingBatch;
+import com.weather.statistics.ingest.ReadingKeyFilter;
+import com.weather.statistics.ingest.ReadingValidator;
 import com.weather.statistics.mapper.SensorDataMapper;
+import com.weather.statistics.metrics.WeatherMetrics;
+import com.weather.statistics.query.ShardedQueryExecutor;
+import com.weather.statistics.storage.JpaReadingStore;
+import com.weather.statistics.storage.ReadingStore;
 import com.weather.statistics.repository.MetricRepository;
+import com.weather.statistics.repository.MetricTypeRepository;
 import com.weather.statistics.repository.SensorRepository;
+import com.weather.statistics.rollup.RollupService;
 import com.weather.statistics.service.WeatherServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -34,7 +74,6 @@ public class WeatherServiceTest {
 
     @Autowired
     private MockMvc mockMvc;
-    @InjectMocks
     private WeatherServiceImpl weatherService;
 
     @Mock
@@ -43,11 +82,44 @@ public class WeatherServiceTest {
     @Mock
     private MetricRepository metricRepository;
 
+    @Mock
+    private MetricTypeRepository metricTypeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private RollupService rollupService;
+
     @Mock
     private SensorDataMapper sensorDataMapper;
 
+    private ReadingKeyFilter readingKeyFilter;
+    private SimpleMeterRegistry meterRegistry;
+    private final AtomicInteger typeIds = new AtomicInteger(2);
+
     @BeforeEach
     public void setup() {
+        readingKeyFilter = new ReadingKeyFilter(100, 100000, Duration.ofHours(1));
+        meterRegistry = new SimpleMeterRegistry();
+        ReadingStore readingStore = new JpaReadingStore(metricRepository);
+        lenient().when(metricTypeRepository.save(any(MetricType.class))).thenAnswer(invocation -> {
+            MetricType type = invocation.getArgument(0);
+            return new MetricType(typeIds.incrementAndGet(), type.getName());
+        });
+        lenient().when(metricTypeRepository.findAll())
+                .thenReturn(List.of(new MetricType(1, "temperature"), new MetricType(2, "humidity")));
+        MetricTypeRegistry metricTypeRegistry = new MetricTypeRegistry(metricTypeRepository, transactionManager, Duration.ofSeconds(10));
+        metricTypeRegistry.load();
+        weatherService = new WeatherServiceImpl(sensorRepository, readingStore, readingKeyFilter,
+                new SensorRegistry(sensorRepository, 100, Duration.ofMinutes(5)),
+                new MetricWriter(readingStore, metricTypeRegistry, event -> { }, transactionManager), rollupService,
+                new QueryResultCache(true, 100, Duration.ofMinutes(5), Duration.ZERO),
+                new HotStore(readingStore, metricTypeRegistry, false, Duration.ofDays(7)),
+                new WeatherMetrics(meterRegistry, false, Duration.ofSeconds(1), 1.0),
+                new ShardedQueryExecutor(false, 0, 64, 32),
+                new ReadingValidator(new WeatherMetrics(meterRegistry, false, Duration.ofSeconds(1), 1.0),
+                        Duration.ofHours(24), Duration.ofMinutes(1)), metricTypeRegistry, 10000);
         mockMvc = MockMvcBuilders.standaloneSetup(weatherService).build();
     }
 
@@ -113,6 +185,325 @@ public class WeatherServiceTest {
         assertThrows(IllegalStateException.class, () -> weatherService.sensorData(invalidRequest), "Location cannot be null or empty");
     }
 
+    @Test
+    void testQuerySensorData_groupsBySensorAndType() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        Sensor paris = new Sensor(2L, 1002L, "Paris", List.of(), LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        List<MetricAggregateDto> aggregates = List.of(
+                new MetricAggregateDto(1001L, "temperature", 2L, 30.0, 10.0, 20.0, 500.0),
+                new MetricAggregateDto(1001L, "humidity", 1L, 50.0, 50.0, 50.0, 2500.0),
+                new MetricAggregateDto(1002L, "temperature", 1L, -5.0, -5.0, -5.0, 25.0));
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of(london, paris));
+        when(metricRepository.aggregateBySensorAndType(anyList(), anyList(), any(), any())).thenReturn(aggregates);
+
+        Map<Long, Map<String, Double>> average = weatherService.querySensorData(
+                List.of(1001L, 1002L), List.of("temperature", "humidity"), "average", now.minusDays(1), now);
+
+        assertEquals(15.0, average.get(1001L).get("temperature"));
+        assertEquals(50.0, average.get(1001L).get("humidity"));
+        assertEquals(-5.0, average.get(1002L).get("temperature"));
+
+        Map<Long, Map<String, Double>> max = weatherService.querySensorData(
+                List.of(1001L, 1002L), List.of("temperature", "humidity"), "MAX", now.minusDays(1), now);
+        assertEquals(20.0, max.get(1001L).get("temperature"));
+
+        Map<Long, Map<String, Double>> stddev = weatherService.querySensorData(
+                List.of(1001L, 1002L), List.of("temperature", "humidity"), "stddev", now.minusDays(1), now);
+        assertEquals(5.0, stddev.get(1001L).get("temperature"), 1e-9);
+        assertEquals(0.0, stddev.get(1002L).get("temperature"), 1e-9);
+    }
+
+    @Test
+    void testQuerySensorData_percentileFromReadings() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of(london));
+        when(metricRepository.streamReadings(anyList(), anyList(), any(), any()))
+                .thenAnswer(invocation -> IntStream.rangeClosed(1, 100)
+                        .mapToObj(i -> new MetricReadingDto(1001L, "temperature", (double) i, now)));
+
+        Map<Long, Map<String, Double>> p95 = weatherService.querySensorData(
+                List.of(1001L), List.of("temperature"), "P95", now.minusDays(1), now);
+
+        assertEquals(95.0, p95.get(1001L).get("temperature"), 95.0 * 0.01);
+    }
+
+    @Test
+    void testQuerySensorSeries_bucketsReadingsByInterval() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime start = LocalDateTime.of(2025, 1, 30, 0, 0);
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of(london));
+        when(metricRepository.streamReadings(anyList(), anyList(), any(), any())).thenReturn(Stream.of(
+                new MetricReadingDto(1001L, "temperature", 10.0, start.plusMinutes(5)),
+                new MetricReadingDto(1001L, "temperature", 20.0, start.plusMinutes(50)),
+                new MetricReadingDto(1001L, "temperature", 40.0, start.plusHours(2).plusMinutes(1))));
+
+        Map<Long, Map<String, List<SeriesPointDto>>> series = weatherService.querySensorSeries(List.of(1001L), List.of("temperature"),
+                "average", start, start.plusDays(1), Duration.ofHours(1), null);
+
+        assertEquals(List.of(new SeriesPointDto(start, 15.0), new SeriesPointDto(start.plusHours(2), 40.0)),
+                series.get(1001L).get("temperature"));
+    }
+
+    @Test
+    void testQuerySensorSeries_rejectsTooManyBuckets() {
+        LocalDateTime now = LocalDateTime.now();
+        assertThrows(IllegalStateException.class, () -> weatherService.querySensorSeries(List.of(1001L), List.of("temperature"),
+                "average", now.minusDays(365), now, Duration.ofMinutes(1), null));
+    }
+
+    @Test
+    void testQuerySensorData_invalidStatistic() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of(london));
+
+        assertThrows(InvalidStatisticException.class, () -> weatherService.querySensorData(
+                List.of(1001L), List.of("temperature"), "median", now.minusDays(1), now));
+    }
+
+    @Test
+    void testBatchSensorData_reportsPerSensorCounts() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        Sensor paris = new Sensor(2L, 1002L, "Paris", List.of(), LocalDateTime.now());
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(sensorRepository.findBySensorId(1002L)).thenReturn(Optional.of(paris));
+        when(metricRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BatchRequestDto batch = new BatchRequestDto(List.of(
+                new RequestDto(1001L, "London", List.of(
+                        new MetricDto("temperature", 20.0, null, "r-1"),
+                        new MetricDto("temperature", 20.0, null, "r-1"),
+                        new MetricDto("humidity", 55.0, null),
+                        new MetricDto("humidity", null, null))),
+                new RequestDto(1002L, "Berlin", List.of(new MetricDto("temperature", 18.0, null)))));
+
+        ResponseDto response = weatherService.batchSensorData(batch);
+
+        assertEquals("200", response.getStatus());
+        List<SensorBatchResultDto> results = (List<SensorBatchResultDto>) response.getData();
+        assertEquals(new SensorBatchResultDto(1001L, 2, 2, null), results.get(0));
+        assertEquals(1002L, results.get(1).getSensorId());
+        assertEquals(0, results.get(1).getAccepted());
+        assertEquals(1, results.get(1).getRejected());
+        verify(metricRepository).saveAll(argThat(metrics -> ((List<Metric>) metrics).size() == 2));
+    }
+
+    @Test
+    void testRegisterSensors_createsNewAndReportsExistingAndConflicts() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        Sensor paris = new Sensor(2L, 1002L, "Paris", List.of(), LocalDateTime.now());
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of(london, paris));
+        when(sensorRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ResponseDto response = weatherService.registerSensors(new BulkSensorRequestDto(List.of(
+                new SensorDto(1001L, "London"),
+                new SensorDto(1002L, "Berlin"),
+                new SensorDto(1003L, "Rome"),
+                new SensorDto(1004L, "Oslo"),
+                new SensorDto(1004L, "Bergen"),
+                new SensorDto(-1L, "Madrid"))));
+
+        Map<Long, String> statuses = ((List<SensorRegistrationResultDto>) response.getData()).stream()
+                .collect(Collectors.toMap(SensorRegistrationResultDto::getSensorId, SensorRegistrationResultDto::getStatus));
+        assertEquals(Map.of(1001L, "existing", 1002L, "conflict", 1003L, "created", 1004L, "conflict", -1L, "invalid"), statuses);
+        verify(sensorRepository).saveAll(argThat(sensors -> ((List<Sensor>) sensors).size() == 1));
+        verify(sensorRepository).findSensorsBySensorIds(argThat(ids -> ids.size() == 3));
+        assertEquals(1.0, meterRegistry.get("weather.sensor.location.conflicts").counter().count());
+    }
+
+    @Test
+    void testRegisterSensors_validatesEachEntry() {
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of());
+        when(sensorRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ResponseDto response = weatherService.registerSensors(new BulkSensorRequestDto(List.of(
+                new SensorDto(1006L, ""),
+                new SensorDto(1006L, "Lisbon"))));
+
+        List<SensorRegistrationResultDto> results = (List<SensorRegistrationResultDto>) response.getData();
+        assertEquals(List.of(SensorRegistrationResultDto.INVALID, SensorRegistrationResultDto.CREATED),
+                results.stream().map(SensorRegistrationResultDto::getStatus).toList());
+        verify(sensorRepository).saveAll(argThat(sensors -> ((List<Sensor>) sensors).size() == 1));
+
+        assertThrows(IllegalStateException.class, () -> weatherService.registerSensors(
+                new BulkSensorRequestDto(Arrays.asList(new SensorDto(1007L, "Porto"), null))));
+    }
+
+    @Test
+    void testRegisterSensors_fallsBackToSingleInsertsOnConcurrentRegistration() {
+        Sensor rome = new Sensor(3L, 1003L, "Rome", List.of(), LocalDateTime.now());
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of());
+        when(sensorRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("sensor_id"));
+        when(sensorRepository.findBySensorId(1003L)).thenReturn(Optional.of(rome));
+        when(sensorRepository.findBySensorId(1005L)).thenReturn(Optional.empty());
+        when(sensorRepository.save(any(Sensor.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ResponseDto response = weatherService.registerSensors(new BulkSensorRequestDto(List.of(
+                new SensorDto(1003L, "Milan"),
+                new SensorDto(1005L, "Vienna"))));
+
+        List<SensorRegistrationResultDto> results = (List<SensorRegistrationResultDto>) response.getData();
+        assertEquals(SensorRegistrationResultDto.CONFLICT, results.get(0).getStatus());
+        assertEquals(SensorRegistrationResultDto.CREATED, results.get(1).getStatus());
+        verify(sensorRepository, times(1)).save(any(Sensor.class));
+    }
+
+    @Test
+    void testSensorData_skipsReadingsAlreadySeen() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime recorded = LocalDateTime.now().minusMinutes(5);
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(metricRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        RequestDto first = new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.0, recorded),
+                new MetricDto("temperature", 20.0, null),
+                new MetricDto("temperature", 20.0, null)));
+        weatherService.sensorData(first);
+        verify(metricRepository).saveAll(argThat(metrics -> ((List<Metric>) metrics).size() == 3));
+
+        RequestDto retry = new RequestDto(1001L, "London", List.of(new MetricDto("temperature", 20.0, recorded)));
+        weatherService.sensorData(retry);
+        verify(metricRepository, never()).findExistingReadingKeys(anyCollection());
+        verify(metricRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testSensorData_keepsClientRecordedTime() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime recorded = LocalDateTime.now().minusMinutes(30);
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(metricRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherService.sensorData(new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.0, recorded),
+                new MetricDto("temperature", 21.0, null))));
+
+        verify(metricRepository).saveAll(argThat(metrics -> ((List<Metric>) metrics).get(0).getRecordedTime().equals(recorded)
+                && ((List<Metric>) metrics).get(1).getRecordedTime().isAfter(recorded)));
+    }
+
+    @Test
+    void testSensorData_storesBinaryReadings() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime recorded = LocalDateTime.now().minusMinutes(30).truncatedTo(ChronoUnit.MILLIS);
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(metricRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        ReadingBatch readings = ReadingBatch.from(new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.0, recorded),
+                new MetricDto("humidity", 60.0, recorded),
+                new MetricDto("temperature", 20.0, recorded))));
+
+        ResponseDto response = weatherService.sensorData(readings);
+
+        assertEquals("200", response.getStatus());
+        verify(metricRepository).saveAll(argThat(metrics -> ((List<Metric>) metrics).size() == 2
+                && ((List<Metric>) metrics).get(1).getType().equals("humidity")
+                && ((List<Metric>) metrics).get(1).getRecordedTime().equals(recorded)
+                && ((List<Metric>) metrics).get(1).getReadingKey().equals("1001/humidity@" + recorded)));
+        assertEquals(1.0, meterRegistry.get("weather.readings.duplicates").counter().count());
+    }
+
+    @Test
+    void testSensorData_rejectsReadingsOutsideLatenessWindow() {
+        RequestDto tooLate = new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.0, LocalDateTime.now().minusMinutes(5)),
+                new MetricDto("temperature", 21.0, LocalDateTime.now().minusDays(2))));
+        RequestDto inFuture = new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.0, LocalDateTime.now().plusHours(1))));
+
+        assertThrows(IllegalStateException.class, () -> weatherService.sensorData(tooLate));
+        assertThrows(IllegalStateException.class, () -> weatherService.sensorData(inFuture));
+        verify(metricRepository, never()).saveAll(anyList());
+        assertEquals(2.0, meterRegistry.get("weather.readings.late").counter().count());
+    }
+
+    @Test
+    void testBatchSensorData_rejectsLateReadingsOnly() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(metricRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ResponseDto response = weatherService.batchSensorData(new BatchRequestDto(List.of(
+                new RequestDto(1001L, "London", List.of(
+                        new MetricDto("temperature", 20.0, LocalDateTime.now().minusHours(2)),
+                        new MetricDto("temperature", 21.0, LocalDateTime.now().minusDays(3)))))));
+
+        SensorBatchResultDto result = ((List<SensorBatchResultDto>) response.getData()).get(0);
+        assertEquals(1, result.getAccepted());
+        assertEquals(1, result.getRejected());
+    }
+
+    @Test
+    void testSensorData_retriesWithoutKeysAlreadyStored() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(metricRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("reading_key"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(metricRepository.findExistingReadingKeys(anyCollection())).thenReturn(List.of("1001/id:a"));
+
+        weatherService.sensorData(new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.0, null, "a"),
+                new MetricDto("temperature", 21.0, null, "b"))));
+
+        verify(metricRepository).saveAll(argThat(metrics -> ((List<Metric>) metrics).size() == 1));
+        assertTrue(readingKeyFilter.contains(1001L, "1001/id:b"));
+    }
+
+    @Test
+    void testSensorData_countsAcceptedDuplicateAndConflictingReadings() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(metricRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherService.sensorData(new RequestDto(1001L, "London", List.of(
+                new MetricDto("temperature", 20.0, null, "a"),
+                new MetricDto("temperature", 20.0, null, "a"),
+                new MetricDto("humidity", 55.0, null))));
+        assertThrows(SensorLocationConflictException.class, () -> weatherService.sensorData(
+                new RequestDto(1001L, "Paris", List.of(new MetricDto("temperature", 20.0, null)))));
+
+        assertEquals(2.0, meterRegistry.get("weather.readings.accepted").counter().count());
+        assertEquals(1.0, meterRegistry.get("weather.readings.duplicates").counter().count());
+        assertEquals(1.0, meterRegistry.get("weather.sensor.location.conflicts").counter().count());
+        assertEquals(1, meterRegistry.get("weather.ingest.requests").timer().count());
+        assertEquals(1, meterRegistry.get("weather.ingest.phase").tag("phase", WeatherMetrics.INSERT).timer().count());
+    }
+
+    @Test
+    void testQuerySensorData_timesPhasesBySource() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of(london));
+        when(metricRepository.aggregateBySensorAndType(anyList(), anyList(), any(), any())).thenReturn(List.of(
+                new MetricAggregateDto(1001L, "temperature", 1L, 20.0, 20.0, 20.0, 400.0)));
+
+        weatherService.querySensorData(List.of(1001L), List.of("temperature"), "average", now.minusDays(1), now);
+        weatherService.querySensorData(List.of(1001L), List.of("temperature"), "average", now.minusDays(1), now);
+
+        assertEquals(2, meterRegistry.get("weather.query.requests").timer().count());
+        assertEquals(1, meterRegistry.get("weather.query.phase")
+                .tags("phase", WeatherMetrics.FETCH, "source", "database").timer().count());
+    }
+
+    @Test
+    void testSensorData_knownSensorSkipsRepository() {
+        Sensor london = new Sensor(1L, 1001L, "London", List.of(), LocalDateTime.now());
+        when(sensorRepository.findBySensorId(1001L)).thenReturn(Optional.of(london));
+        when(sensorRepository.findSensorsBySensorIds(anyList())).thenReturn(List.of());
+
+        weatherService.sensorData(new RequestDto(1001L, "London", List.of(new MetricDto("temperature", 20.0, null))));
+        weatherService.sensorData(new RequestDto(1001L, "London", List.of(new MetricDto("temperature", 21.0, null))));
+        assertThrows(SomeSensorsNotFoundException.class, () -> weatherService.querySensorData(
+                List.of(1001L, 1002L), List.of("temperature"), "average", LocalDateTime.now().minusDays(1), LocalDateTime.now()));
+
+        verify(sensorRepository, times(1)).findBySensorId(1001L);
+        verify(sensorRepository).findSensorsBySensorIds(List.of(1002L));
+    }
+
     @Test
     void testGetSensorMetrics_notFound() throws Exception {
         mockMvc.perform(get("/weather/metrics"))